@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspTagException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.ActionUtils;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ognl.OgnlValueStack;
+
+/**
+ * Measures property lookups on the value stack with simple, nested and indexed
+ * names.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ActionValueBenchmark
+{
+	/** The name of the property. */
+	@Param({"name", "address.city", "tags[3]", "rows[3].city", "preferences['key3']"})
+	public String name;
+
+	private OgnlValueStack m_valueStack;
+
+	/**
+	 * Builds the value stack.
+	 */
+	@Setup
+	public void setUp()
+	{
+		m_valueStack = ValueStackFixture.create(new BenchmarkAction());
+	}
+
+	/**
+	 * Looks up the property.
+	 * @return the value.
+	 * @throws JspTagException if an error occurred.
+	 */
+	@Benchmark
+	public Object getActionValue() throws JspTagException
+	{
+		return ActionUtils.getActionValue(m_valueStack, name);
+	}
+
+	/**
+	 * Looks up the property using OGNL through the value stack, as a baseline.
+	 * @return the value.
+	 */
+	@Benchmark
+	public Object findValue()
+	{
+		return m_valueStack.findValue(name, true);
+	}
+}
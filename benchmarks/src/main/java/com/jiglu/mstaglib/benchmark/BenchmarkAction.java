@@ -0,0 +1,231 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * An action with the kinds of properties a typical form binds to.
+ */
+public class BenchmarkAction extends ActionSupport
+{
+	private final String m_name = "Jane Smith";
+
+	private final String m_description;
+
+	private final boolean m_subscribed = true;
+
+	private final String m_country = "GB";
+
+	private final Address m_address = new Address("Cambridge");
+
+	private final List<String> m_tags = new ArrayList<>();
+
+	private final Map<String, String> m_preferences = new LinkedHashMap<>();
+
+	private final List<Address> m_rows = new ArrayList<>();
+
+	private Object m_selection;
+
+	private Object m_document;
+
+	/** Serial version UID */
+	private static final long serialVersionUID = -4217650313318841126L;
+
+	/**
+	 * Creates a new action.
+	 */
+	public BenchmarkAction()
+	{
+		StringBuilder description = new StringBuilder();
+
+		for (int i = 0; i < 20; i++)
+		{
+			description.append("Line ").append(i).append(" of the \"notes\" for <Smith & Sons>\n");
+		}
+
+		m_description = description.toString();
+
+		for (int i = 0; i < 10; i++)
+		{
+			m_tags.add("tag" + i);
+			m_preferences.put("key" + i, "value" + i);
+			m_rows.add(new Address("City " + i));
+		}
+	}
+
+	/**
+	 * Gets the address.
+	 * @return the address.
+	 */
+	public Address getAddress()
+	{
+		return m_address;
+	}
+
+	/**
+	 * Gets the country.
+	 * @return the country.
+	 */
+	public String getCountry()
+	{
+		return m_country;
+	}
+
+	/**
+	 * Gets the description.
+	 * @return the description.
+	 */
+	public String getDescription()
+	{
+		return m_description;
+	}
+
+	/**
+	 * Gets the document.
+	 * @return the document.
+	 */
+	public Object getDocument()
+	{
+		return m_document;
+	}
+
+	/**
+	 * Gets the name.
+	 * @return the name.
+	 */
+	public String getName()
+	{
+		return m_name;
+	}
+
+	/**
+	 * Gets the preferences.
+	 * @return the preferences.
+	 */
+	public Map<String, String> getPreferences()
+	{
+		return m_preferences;
+	}
+
+	/**
+	 * Gets the rows.
+	 * @return the rows.
+	 */
+	public List<Address> getRows()
+	{
+		return m_rows;
+	}
+
+	/**
+	 * Gets the selection.
+	 * @return the selection.
+	 */
+	public Object getSelection()
+	{
+		return m_selection;
+	}
+
+	/**
+	 * Gets the tags.
+	 * @return the tags.
+	 */
+	public List<String> getTags()
+	{
+		return m_tags;
+	}
+
+	/**
+	 * Gets whether subscribed.
+	 * @return true if subscribed.
+	 */
+	public boolean isSubscribed()
+	{
+		return m_subscribed;
+	}
+
+	/**
+	 * Sets the document.
+	 * @param document the document.
+	 */
+	public void setDocument(Object document)
+	{
+		m_document = document;
+	}
+
+	/**
+	 * Sets the selection.
+	 * @param selection the selection.
+	 */
+	public void setSelection(Object selection)
+	{
+		m_selection = selection;
+	}
+
+	/**
+	 * A nested bean.
+	 */
+	public static final class Address
+	{
+		private final String m_city;
+
+		/**
+		 * Creates a new address.
+		 * @param city the city.
+		 */
+		public Address(String city)
+		{
+			m_city = city;
+		}
+
+		/**
+		 * Gets the city.
+		 * @return the city.
+		 */
+		public String getCity()
+		{
+			return m_city;
+		}
+
+		/**
+		 * Gets the country.
+		 * @return the country.
+		 */
+		public String getCountry()
+		{
+			return "UK";
+		}
+
+		/**
+		 * Gets the postcode.
+		 * @return the postcode.
+		 */
+		public String getPostcode()
+		{
+			return "CB1 1AA";
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled so that the allocation
+ * rate is reported alongside the throughput. Accepts the usual JMH command
+ * line options.
+ */
+public final class BenchmarkRunner
+{
+	/** Private default constructor to prevent external instantiation. */
+	private BenchmarkRunner()
+	{
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * @param args the JMH command line options.
+	 * @throws Exception if an error occurred.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+
+		new Runner(options).run();
+	}
+}
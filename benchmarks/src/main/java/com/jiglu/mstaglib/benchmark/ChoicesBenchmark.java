@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.Checkboxes;
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures rendering a group of checkboxes bound to a list, with an input tag
+ * for each choice compared with a single checkboxes tag.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ChoicesBenchmark
+{
+	/** The number of choices in the group. */
+	@Param({"10", "600"})
+	public int choices;
+
+	private StubPageContext m_pageContext;
+
+	private final Checkboxes m_checkboxes = new Checkboxes();
+
+	private final List<String> m_values = new ArrayList<>();
+
+	/**
+	 * Builds the page context and the choices, with every tenth selected.
+	 */
+	@Setup
+	public void setUp()
+	{
+		BenchmarkAction action = new BenchmarkAction();
+		List<String> selection = new ArrayList<>();
+
+		m_pageContext = new StubPageContext(ValueStackFixture.create(action));
+
+		for (int i = 0; i < choices; i++)
+		{
+			m_values.add("P" + i);
+
+			if ((i % 10) == 0)
+			{
+				selection.add("P" + i);
+			}
+		}
+
+		action.setSelection(selection);
+
+		m_checkboxes.setPageContext(m_pageContext);
+	}
+
+	/**
+	 * Renders a checkboxes tag for the whole group.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int checkboxesTag() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_checkboxes.setName("selection");
+		m_checkboxes.setItems(m_values);
+		m_checkboxes.setCacheKey("choices" + choices);
+		m_checkboxes.setLabels("false");
+		m_checkboxes.setErrorClass("error");
+		m_checkboxes.doStartTag();
+		m_checkboxes.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders an input tag for each choice.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputPerChoice() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		for (int i = 0; i < choices; i++)
+		{
+			TagRenderer.input(m_pageContext, "checkbox", "selection", m_values.get(i), null, null, null, null,
+				"error");
+		}
+
+		return m_pageContext.getOutput().length();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.ActionUtils;
+import com.jiglu.mstaglib.stub.StubBodyContent;
+
+/**
+ * Measures entity escaping of text with and without characters to escape.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class EscapeBenchmark
+{
+	/** Whether the input is clean text, dirty text or dense with characters to escape. */
+	@Param({"clean", "dirty", "dense"})
+	public String kind;
+
+	/** The length of the input. */
+	@Param({"32", "65536"})
+	public int length;
+
+	private String m_input;
+
+	private final StubBodyContent m_out = new StubBodyContent(null);
+
+	private final StringBuilder m_buffer = new StringBuilder();
+
+	/**
+	 * Builds the input.
+	 */
+	@Setup
+	public void setUp()
+	{
+		String pattern;
+
+		switch (kind)
+		{
+			case "clean":
+				pattern = "The quick brown fox jumps over the lazy dog. ";
+				break;
+
+			case "dirty":
+				pattern = "The quick brown fox jumps over the \"lazy\" dog. ";
+				break;
+
+			default:
+				pattern = "<a href=\"x\">&amp;</a>";
+				break;
+		}
+
+		StringBuilder input = new StringBuilder(length);
+
+		while (input.length() < length)
+		{
+			input.append(pattern);
+		}
+
+		input.setLength(length);
+		m_input = input.toString();
+	}
+
+	/**
+	 * Escapes to a reused string builder.
+	 * @return the number of characters appended.
+	 * @throws IOException if an error occurred appending.
+	 */
+	@Benchmark
+	public int escapeToAppendable() throws IOException
+	{
+		m_buffer.setLength(0);
+
+		ActionUtils.escapeEntities(m_input, m_buffer);
+
+		return m_buffer.length();
+	}
+
+	/**
+	 * Escapes to a new string.
+	 * @return the escaped string.
+	 */
+	@Benchmark
+	public String escapeToString()
+	{
+		return ActionUtils.escapeEntities(m_input);
+	}
+
+	/**
+	 * Escapes straight to a writer.
+	 * @return the number of characters written.
+	 * @throws IOException if an error occurred writing.
+	 */
+	@Benchmark
+	public int escapeToWriter() throws IOException
+	{
+		m_out.clearBuffer();
+
+		ActionUtils.escapeEntities(m_input, m_out);
+
+		return m_out.length();
+	}
+}
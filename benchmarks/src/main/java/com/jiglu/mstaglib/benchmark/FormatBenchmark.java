@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures rendering an input for a formatted number with the format
+ * attribute, compared with formatting it first with a new format for each
+ * use, as the JSTL formatNumber tag does, and passing it as the value.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FormatBenchmark
+{
+	/** The pattern to format the number with. */
+	private static final String PATTERN = "#,##0.00";
+
+	private StubPageContext m_pageContext;
+
+	private final BenchmarkAction m_action = new BenchmarkAction();
+
+	/**
+	 * Builds the page context with the number as the document.
+	 */
+	@Setup
+	public void setUp()
+	{
+		m_pageContext = new StubPageContext(ValueStackFixture.create(m_action));
+
+		m_action.setDocument(new BigDecimal("1234567.891"));
+	}
+
+	/**
+	 * Renders an input with the number formatted by the format attribute.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int formatAttribute() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		TagRenderer.formattedInput(m_pageContext, "text", "document", null, PATTERN, null, null, null, null, null);
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders an input with the number formatted before the tag and passed as
+	 * its value.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int formatBeforeTag() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		DecimalFormat format = new DecimalFormat(PATTERN, DecimalFormatSymbols.getInstance(Locale.getDefault()));
+		String value = format.format(m_action.getDocument());
+
+		TagRenderer.input(m_pageContext, "text", "document", value, null, null, null, null, null);
+
+		return m_pageContext.getOutput().length();
+	}
+}
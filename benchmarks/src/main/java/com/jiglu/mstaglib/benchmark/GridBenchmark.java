@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.Nested;
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures rendering a grid of inputs for the rows of a list, naming each
+ * field by its full indexed path or relative to a nested tag for the row. With
+ * enough rows the full names no longer fit in the expression and accessor
+ * caches.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class GridBenchmark
+{
+	/** The properties of each row rendered as columns. */
+	private static final String[] COLUMNS = {"city", "postcode", "country"};
+
+	/** The number of rows in the action's list. */
+	@Param({"10", "1000"})
+	public int rows;
+
+	private StubPageContext m_pageContext;
+
+	private final Nested m_nested = new Nested();
+
+	private String[] m_paths;
+
+	private String[][] m_names;
+
+	/**
+	 * Builds the page context and the names.
+	 */
+	@Setup
+	public void setUp()
+	{
+		BenchmarkAction action = new BenchmarkAction();
+
+		m_paths = new String[rows];
+		m_names = new String[rows][COLUMNS.length];
+
+		for (int i = action.getRows().size(); i < rows; i++)
+		{
+			action.getRows().add(new BenchmarkAction.Address("City " + i));
+		}
+
+		m_pageContext = new StubPageContext(ValueStackFixture.create(action));
+		m_nested.setPageContext(m_pageContext);
+
+		for (int i = 0; i < rows; i++)
+		{
+			m_paths[i] = "rows[" + i + "]";
+
+			for (int j = 0; j < COLUMNS.length; j++)
+			{
+				m_names[i][j] = m_paths[i] + "." + COLUMNS[j];
+			}
+		}
+	}
+
+	/**
+	 * Renders the grid with the full name for every field.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int fullNames() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		for (String[] row : m_names)
+		{
+			for (String name : row)
+			{
+				TagRenderer.input(m_pageContext, "text", name, null, null, null, null, null, "error");
+			}
+		}
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders the grid with a nested tag for each row.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int nested() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		for (String path : m_paths)
+		{
+			m_nested.setPath(path);
+			m_nested.doStartTag();
+
+			for (String column : COLUMNS)
+			{
+				TagRenderer.input(m_pageContext, "text", column, null, null, null, null, null, "error");
+			}
+
+			m_nested.doEndTag();
+			m_nested.doFinally();
+		}
+
+		return m_pageContext.getOutput().length();
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.Input;
+
+/**
+ * Measures the memory taken by a tag handler, as reported by the allocation
+ * per operation from the GC profiler, with and without dynamic attributes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class HandlerBenchmark
+{
+	/**
+	 * Creates a handler with no dynamic attributes.
+	 * @return the handler.
+	 */
+	@Benchmark
+	public Input createInput()
+	{
+		Input input = new Input();
+
+		input.setType("text");
+		input.setName("name");
+
+		return input;
+	}
+
+	/**
+	 * Creates a handler with a class and three other dynamic attributes.
+	 * @return the handler.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public Input createInputWithAttributes() throws JspException
+	{
+		Input input = new Input();
+
+		input.setType("text");
+		input.setName("name");
+		input.setDynamicAttribute(null, "class", "field");
+		input.setDynamicAttribute(null, "id", "name");
+		input.setDynamicAttribute(null, "maxlength", "50");
+		input.setDynamicAttribute(null, "placeholder", "Your name");
+
+		return input;
+	}
+}
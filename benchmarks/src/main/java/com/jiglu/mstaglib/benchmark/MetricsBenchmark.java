@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jiglu.mstaglib.TagMetricsListener;
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures the cost of the metrics on rendering a text input: with timing
+ * and tracing off, with timing on, with tracing on but nothing slow enough to
+ * record, and with tracing recording every render and lookup, which is the
+ * most tracing can cost.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class MetricsBenchmark
+{
+	/** The metrics switched on. */
+	@Param({"off", "timing", "tracing", "tracingAll"})
+	public String mode;
+
+	private StubPageContext m_pageContext;
+
+	private final TagMetricsListener m_listener = new TagMetricsListener();
+
+	private ServletContextEvent m_event;
+
+	/**
+	 * Builds the page context and switches the metrics through JMX.
+	 * @throws JMException if the metrics couldn't be switched.
+	 */
+	@Setup
+	public void setUp() throws JMException
+	{
+		m_pageContext = new StubPageContext(ValueStackFixture.create(new BenchmarkAction()));
+
+		// Register the MBean the way the container would, with just enough of a servlet context to name it
+		ServletContext servletContext = (ServletContext)Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[] {ServletContext.class},
+			(proxy, method, args) -> method.getName().equals("getContextPath") ? "/benchmark" : null);
+
+		m_event = new ServletContextEvent(servletContext);
+		m_listener.contextInitialized(m_event);
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.jiglu.mstaglib:type=TagMetrics,context=\"/benchmark\"");
+
+		server.setAttribute(name, new Attribute("TimingEnabled", mode.equals("timing")));
+		server.setAttribute(name, new Attribute("TracingEnabled", mode.startsWith("tracing")));
+		server.setAttribute(name, new Attribute("SlowThreshold", mode.equals("tracingAll") ? 0L : 1000L));
+	}
+
+	/**
+	 * Unregisters the MBean.
+	 */
+	@TearDown
+	public void tearDown()
+	{
+		m_listener.contextDestroyed(m_event);
+	}
+
+	/**
+	 * Renders a text input bound to a property.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputText() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		TagRenderer.input(m_pageContext, "text", "name", null, null, null, null, "field", "error");
+
+		return m_pageContext.getOutput().length();
+	}
+}
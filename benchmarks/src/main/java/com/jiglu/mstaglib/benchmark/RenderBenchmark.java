@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.AttributeFragment;
+import com.jiglu.mstaglib.Input;
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.Textarea;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures rendering whole tags the way a container with tag pooling drives
+ * them: the same handlers are reused, with their attributes set before each
+ * use. Every invocation is treated as the first tag of a new request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RenderBenchmark
+{
+	/** The literal attribute as the Jasper tag plugins declare it. */
+	private static final AttributeFragment MAXLENGTH = AttributeFragment.of("maxlength", "50");
+
+	private StubPageContext m_pageContext;
+
+	private final Input m_input = new Input();
+
+	private final Textarea m_textarea = new Textarea();
+
+	/**
+	 * Builds the page context.
+	 */
+	@Setup
+	public void setUp()
+	{
+		m_pageContext = new StubPageContext(ValueStackFixture.create(new BenchmarkAction()));
+
+		m_input.setPageContext(m_pageContext);
+		m_textarea.setPageContext(m_pageContext);
+	}
+
+	/**
+	 * Renders a text input bound to a property.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputText() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_input.setType("text");
+		m_input.setName("name");
+		m_input.setErrorClass("error");
+		m_input.setDynamicAttribute(null, "class", "field");
+		m_input.setDynamicAttribute(null, "maxlength", "50");
+		m_input.doStartTag();
+		m_input.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders the same text input through the static rendering API, the way
+	 * the code generated by the Jasper tag plugins does.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputTextInlined() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		TagRenderer.input(m_pageContext, "text", "name", null, null, null, null, "field", "error", "maxlength",
+			MAXLENGTH);
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders a checkbox bound to a property.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputCheckbox() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_input.setType("checkbox");
+		m_input.setName("subscribed");
+		m_input.setValue("true");
+		m_input.doStartTag();
+		m_input.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders an input with its value given and the required and disabled
+	 * attributes set, so nothing is looked up and the time is all in writing
+	 * the tag.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputWithFlags() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_input.setType("email");
+		m_input.setName("email");
+		m_input.setValue("jane@example.com");
+		m_input.setRequired("required");
+		m_input.setDisabled("true");
+		m_input.doStartTag();
+		m_input.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders a textarea bound to a property with text to escape.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int textarea() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_textarea.setName("description");
+		m_textarea.setRequired("true");
+		m_textarea.doStartTag();
+		m_textarea.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.PageContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Compares rendering from the Struts value stack with rendering from request
+ * attributes through EL, for a simple property and a nested path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ResolverBenchmark
+{
+	/** The resolver the page is rendered with. */
+	@Param({"ognl", "el"})
+	public String resolver;
+
+	private final BenchmarkAction m_action = new BenchmarkAction();
+
+	private StubPageContext m_pageContext;
+
+	/**
+	 * Builds the page context, with a value stack only for OGNL and the EL
+	 * resolver listed only for EL.
+	 */
+	@Setup
+	public void setUp()
+	{
+		m_pageContext = new StubPageContext(resolver.equals("ognl") ? ValueStackFixture.create(m_action) : null);
+
+		if (resolver.equals("el"))
+		{
+			m_pageContext.setInitParameter("com.jiglu.mstaglib.valueResolvers", "com.jiglu.mstaglib.ELValueResolver");
+		}
+	}
+
+	/**
+	 * Renders a text input bound to a nested path.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputPath() throws JspException
+	{
+		newRequest();
+
+		TagRenderer.input(m_pageContext, "text", "address.city", null, null, null, null, "field", "error");
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders a text input bound to a property.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int inputText() throws JspException
+	{
+		newRequest();
+
+		TagRenderer.input(m_pageContext, "text", "name", null, null, null, null, "field", "error");
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Starts a new request, exposing the action's properties as request
+	 * attributes when there's no value stack.
+	 */
+	private void newRequest()
+	{
+		m_pageContext.newRequest();
+
+		if (resolver.equals("el"))
+		{
+			m_pageContext.setAttribute("name", m_action.getName(), PageContext.REQUEST_SCOPE);
+			m_pageContext.setAttribute("address", m_action.getAddress(), PageContext.REQUEST_SCOPE);
+		}
+	}
+}
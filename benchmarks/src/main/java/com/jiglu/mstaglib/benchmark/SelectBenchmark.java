@@ -0,0 +1,225 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.Option;
+import com.jiglu.mstaglib.Options;
+import com.jiglu.mstaglib.Select;
+import com.jiglu.mstaglib.stub.StubBodyContent;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures rendering a select with an option tag for each value, driving the
+ * handlers the same way as {@link RenderBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SelectBenchmark
+{
+	/** The number of options in the select. */
+	@Param({"10", "200"})
+	public int options;
+
+	private StubPageContext m_pageContext;
+
+	private final Select m_select = new Select();
+
+	private final Option m_option = new Option();
+
+	private final Options m_options = new Options();
+
+	private final List<String> m_values = new ArrayList<>();
+
+	private final List<StubBodyContent> m_labels = new ArrayList<>();
+
+	private final List<String> m_labelTexts = new ArrayList<>();
+
+	private final List<String> m_keys = new ArrayList<>();
+
+	/**
+	 * Builds the page context and the option values and labels.
+	 * @throws Exception if an error occurred.
+	 */
+	@Setup
+	public void setUp() throws Exception
+	{
+		BenchmarkAction action = new BenchmarkAction();
+		List<String> selection = new ArrayList<>();
+
+		m_pageContext = new StubPageContext(ValueStackFixture.create(action));
+
+		for (int i = 0; i < options; i++)
+		{
+			StubBodyContent label = new StubBodyContent(m_pageContext.getOut());
+
+			label.write("Country " + i);
+
+			m_values.add("C" + i);
+			m_labels.add(label);
+			m_labelTexts.add("Country " + i);
+			m_keys.add("country.C" + i);
+
+			if ((i % 10) == 0)
+			{
+				selection.add("C" + i);
+			}
+		}
+
+		action.setSelection(selection);
+
+		m_select.setPageContext(m_pageContext);
+		m_option.setPageContext(m_pageContext);
+		m_option.setParent(m_select);
+		m_options.setPageContext(m_pageContext);
+		m_options.setParent(m_select);
+	}
+
+	/**
+	 * Renders a multiple select bound to a list with an option tag for each
+	 * value.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int selectWithOptions() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_select.setName("selection");
+		m_select.setDynamicAttribute(null, "multiple", "multiple");
+		m_select.doStartTag();
+
+		for (int i = 0; i < options; i++)
+		{
+			m_option.setValue(m_values.get(i));
+			m_option.doStartTag();
+			m_option.setBodyContent(m_labels.get(i));
+			m_option.doEndTag();
+		}
+
+		m_select.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders the same select with a label attribute on each option tag, so
+	 * no body is buffered. The container's cost of buffering a body isn't
+	 * included in {@link #selectWithOptions()}, which is given ready made
+	 * bodies, so this shows only the difference in rendering.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int selectWithLabels() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_select.setName("selection");
+		m_select.setDynamicAttribute(null, "multiple", "multiple");
+		m_select.doStartTag();
+
+		for (int i = 0; i < options; i++)
+		{
+			m_option.setValue(m_values.get(i));
+			m_option.setLabel(m_labelTexts.get(i));
+			m_option.doStartTag();
+			m_option.doEndTag();
+		}
+
+		m_option.setLabel(null);
+		m_select.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders the same select with a key on each option tag, so each label is
+	 * looked up through the action's text provider. The action has no bundle
+	 * so the labels are the keys, but after the first call each is found in
+	 * the shared cache without asking the text provider.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int selectWithKeys() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_select.setName("selection");
+		m_select.setDynamicAttribute(null, "multiple", "multiple");
+		m_select.doStartTag();
+
+		for (int i = 0; i < options; i++)
+		{
+			m_option.setValue(m_values.get(i));
+			m_option.setKey(m_keys.get(i));
+			m_option.doStartTag();
+			m_option.doEndTag();
+		}
+
+		m_option.setKey(null);
+		m_select.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+
+	/**
+	 * Renders the same select using a single options tag with a cached model.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int selectWithOptionsTag() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		m_select.setName("selection");
+		m_select.setDynamicAttribute(null, "multiple", "multiple");
+		m_select.doStartTag();
+
+		m_options.setItems(m_values);
+		m_options.setCacheKey("values" + options);
+		m_options.doStartTag();
+		m_options.doEndTag();
+
+		m_select.doEndTag();
+
+		return m_pageContext.getOutput().length();
+	}
+}
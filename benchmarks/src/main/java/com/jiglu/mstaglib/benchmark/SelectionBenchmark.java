@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jiglu.mstaglib.ActionUtils;
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ognl.OgnlValueStack;
+
+/**
+ * Measures selection tests against arrays, lists, sets and maps of varying
+ * sizes. The candidate is the last item, the worst case for a linear scan.
+ * Rendering a select tests every item as an option, as a multi-select does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SelectionBenchmark
+{
+	/** The type of the selected value. */
+	@Param({"array", "longs", "list", "set", "map"})
+	public String kind;
+
+	/** The number of selected items. */
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	private Object m_selection;
+
+	private String m_candidate;
+
+	private String[] m_candidates;
+
+	private OgnlValueStack m_valueStack;
+
+	private StubPageContext m_pageContext;
+
+	/**
+	 * Builds the selected value and the value stack.
+	 */
+	@Setup
+	public void setUp()
+	{
+		List<String> items = new ArrayList<>(size);
+		Map<String, String> map = new LinkedHashMap<>();
+		long[] longs = new long[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			items.add("item" + i);
+			map.put("key" + i, "item" + i);
+			longs[i] = i;
+		}
+
+		switch (kind)
+		{
+			case "array":
+				m_selection = items.toArray(new String[0]);
+				break;
+
+			case "longs":
+				m_selection = longs;
+				break;
+
+			case "list":
+				m_selection = items;
+				break;
+
+			case "set":
+				m_selection = new HashSet<>(items);
+				break;
+
+			default:
+				m_selection = map;
+				break;
+		}
+
+		m_candidates = new String[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			m_candidates[i] = kind.equals("longs") ? String.valueOf(i) : ("item" + i);
+		}
+
+		m_candidate = m_candidates[size - 1];
+
+		BenchmarkAction action = new BenchmarkAction();
+
+		action.setSelection(m_selection);
+		m_valueStack = ValueStackFixture.create(action);
+		m_pageContext = new StubPageContext(m_valueStack);
+	}
+
+	/**
+	 * Tests a value already retrieved from the action.
+	 * @return true if selected.
+	 */
+	@Benchmark
+	public boolean isSelectedValue()
+	{
+		return ActionUtils.isSelected(m_selection, m_candidate);
+	}
+
+	/**
+	 * Tests a property looked up on the value stack.
+	 * @return true if selected.
+	 * @throws JspTagException if an error occurred.
+	 */
+	@Benchmark
+	public boolean isSelectedProperty() throws JspTagException
+	{
+		return ActionUtils.isSelected(m_valueStack, "selection", m_candidate);
+	}
+
+	/**
+	 * Renders a select with an option for every item, each of which is
+	 * tested against the selection.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int selectAllOptions() throws JspException
+	{
+		m_pageContext.newRequest();
+
+		TagRenderer.startSelect(m_pageContext, "selection", null, null, null, null);
+
+		for (String candidate : m_candidates)
+		{
+			TagRenderer.option(m_pageContext, candidate, null, null);
+		}
+
+		TagRenderer.endSelect(m_pageContext);
+
+		return m_pageContext.getOutput().length();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.jsp.JspException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jiglu.mstaglib.TagRenderer;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+
+/**
+ * Measures rendering a textarea bound to a large document held as a string,
+ * a string builder and a file. The allocation rate from the GC profiler shows
+ * whether the document is copied on the way to the writer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class TextareaBenchmark
+{
+	/** The number of characters in the document. */
+	@Param({"10000", "2000000"})
+	public int size;
+
+	private StubPageContext m_pageContext;
+
+	private final BenchmarkAction m_action = new BenchmarkAction();
+
+	private String m_string;
+
+	private StringBuilder m_builder;
+
+	private Path m_file;
+
+	/**
+	 * Builds the page context and the document, writing a copy to a
+	 * temporary file.
+	 * @throws IOException if the file couldn't be written.
+	 */
+	@Setup
+	public void setUp() throws IOException
+	{
+		m_pageContext = new StubPageContext(ValueStackFixture.create(m_action));
+		m_builder = new StringBuilder(size);
+
+		while (m_builder.length() < size)
+		{
+			m_builder.append("<entry key=\"line").append(m_builder.length()).append("\">Smith & Sons</entry>\n");
+		}
+
+		m_builder.setLength(size);
+		m_string = m_builder.toString();
+		m_file = Files.createTempFile("textarea", ".xml");
+
+		Files.write(m_file, m_string.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Deletes the temporary file.
+	 * @throws IOException if the file couldn't be deleted.
+	 */
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(m_file);
+	}
+
+	/**
+	 * Renders a textarea for the document as a string builder.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int builder() throws JspException
+	{
+		return render(m_builder);
+	}
+
+	/**
+	 * Renders a textarea for the document as a file.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int file() throws JspException
+	{
+		return render(m_file);
+	}
+
+	/**
+	 * Renders a textarea for the document as a string.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	@Benchmark
+	public int string() throws JspException
+	{
+		return render(m_string);
+	}
+
+	/**
+	 * Renders a textarea for a document.
+	 * @param document the document.
+	 * @return the number of characters written.
+	 * @throws JspException if an error occurred.
+	 */
+	private int render(Object document) throws JspException
+	{
+		m_pageContext.newRequest();
+		m_action.setDocument(document);
+
+		TagRenderer.textarea(m_pageContext, "document", null, null, null, null, null);
+
+		return m_pageContext.getOutput().length();
+	}
+}
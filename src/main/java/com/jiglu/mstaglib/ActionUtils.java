@@ -19,6 +19,8 @@
 
 package com.jiglu.mstaglib;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -26,8 +28,13 @@ import java.util.regex.Pattern;
 import javax.servlet.jsp.JspTagException;
 import javax.servlet.jsp.PageContext;
 
+import com.opensymphony.xwork2.TextProvider;
 import com.opensymphony.xwork2.interceptor.ValidationAware;
 import com.opensymphony.xwork2.ognl.OgnlValueStack;
+import com.opensymphony.xwork2.util.reflection.ReflectionContextState;
+
+import ognl.Ognl;
+import ognl.OgnlException;
 
 /**
  * Utilities for tags working with Struts 2 actions.
@@ -50,69 +57,132 @@ public final class ActionUtils
 	 * Escapes characters that need entities in XML: &lt;, &gt;, &amp; and
 	 * &quot;.
 	 * @param input a plain text string to escape.
-	 * @return the escaped string.
+	 * @return the escaped string, which is the input itself if nothing needed
+	 * escaping.
 	 */
 	public static String escapeEntities(String input)
 	{
-		StringBuilder buffer;
-		String entity;
-		int c, pos;
+		return Escaper.escape(input);
+	}
+
+	/**
+	 * Escapes characters that need entities in XML: &lt;, &gt;, &amp; and
+	 * &quot;, appending the result to an appendable. Runs of characters that
+	 * don't need escaping are appended without being copied.
+	 * @param input a plain text character sequence to escape.
+	 * @param out the appendable to append the escaped characters to.
+	 * @throws IOException if an error occurred appending.
+	 */
+	public static void escapeEntities(CharSequence input, Appendable out) throws IOException
+	{
+		Escaper.escape(input, out);
+	}
+
+	/**
+	 * Escapes characters that need entities in XML: &lt;, &gt;, &amp; and
+	 * &quot;, writing the result straight to a writer. Runs of characters that
+	 * don't need escaping are written without being copied.
+	 * @param input a plain text string to escape.
+	 * @param out the writer to write the escaped string to.
+	 * @throws IOException if an error occurred writing.
+	 */
+	public static void escapeEntities(String input, Writer out) throws IOException
+	{
+		Escaper.escape(input, out);
+	}
 
-		buffer = null;
+	/**
+	 * Reads a property from a bean, falling back to OGNL if it can't be read
+	 * directly.
+	 * @param valueStack the value stack.
+	 * @param bean the bean to read the property from.
+	 * @param name the name of the property.
+	 * @param expression the parsed expression for the name.
+	 * @return the value.
+	 * @throws JspTagException if an error occurred.
+	 */
+	private static Object findPropertyValue(OgnlValueStack valueStack, Object bean, String name, Object expression)
+		throws JspTagException
+	{
+		Object value = PropertyAccessors.getValue(bean, name);
 
-		for (int i = 0, l = input.length(); i < l; i++)
+		if (value != PropertyAccessors.UNRESOLVED)
 		{
-			entity = null;
-			c = input.charAt(i);
-			pos = i;
+			return value;
+		}
 
-			switch (c)
-			{
-				case '<':
-					entity = "&lt;";
-					break;
+		Map<String, Object> context = valueStack.getContext();
 
-				case '>':
-					entity = "&gt;";
-					break;
+		try
+		{
+			return Ognl.getValue(expression, context, bean);
+		}
+		catch (Exception e)
+		{
+			throw new JspTagException("Unable to access the specified property: " + name, e);
+		}
+		finally
+		{
+			// OGNL makes the bean the root of the context so put the value stack's back
+			Ognl.setRoot(context, valueStack.getRoot());
+			ReflectionContextState.clear(context);
+		}
+	}
 
-				case '&':
-					entity = "&amp;";
-					break;
+	/**
+	 * Evaluates an already parsed expression against the value stack. This
+	 * follows <code>OgnlValueStack.findValue(name, true)</code>, falling back
+	 * to the stack context if the property is null or can't be found, but
+	 * without the stack having to look the expression up again. Simple paths
+	 * are read directly by {@link PropertyAccessors} where possible and names
+	 * with an override from a conversion error are left to the value stack.
+	 * @param valueStack the value stack.
+	 * @param name the name of the property.
+	 * @param expression the parsed expression for the name.
+	 * @return the value.
+	 * @throws OgnlException if the property could not be found.
+	 */
+	private static Object findValue(OgnlValueStack valueStack, String name, Object expression) throws OgnlException
+	{
+		Map<Object, Object> overrides = valueStack.getExprOverrides();
 
-				case '"':
-					entity = "&quot;";
-					break;
+		if ((overrides != null) && overrides.containsKey(name))
+		{
+			return valueStack.findValue(name, true);
+		}
 
-				default:
-					break;
-			}
+		Map<String, Object> context = valueStack.getContext();
 
-			if (buffer == null)
-			{
-				if (entity != null)
-				{
-					// An entity occurred, so we'll have to use StringBuilder so allocate room for it plus a few more entities
-					buffer = new StringBuilder(input.length() + 20);
+		// Simple bean paths can be read straight from the object at the top of the stack
+		Object value = PropertyAccessors.getValue(valueStack.peek(), name);
 
-					// Copy previous skipped characters and fall through to pickup current character
-					buffer.append(input.substring(0, pos)).append(entity);
-				}
-			}
-			else
+		if (value != PropertyAccessors.UNRESOLVED)
+		{
+			return (value != null) ? value : context.get(name);
+		}
+
+		context.put(OgnlValueStack.THROW_EXCEPTION_ON_FAILURE, Boolean.TRUE);
+
+		try
+		{
+			value = Ognl.getValue(expression, context, valueStack.getRoot());
+		}
+		catch (OgnlException e)
+		{
+			value = (e.getReason() instanceof SecurityException) ? null : context.get(name);
+
+			if (value == null)
 			{
-				if (entity == null)
-				{
-					buffer.append((char)c);
-				}
-				else
-				{
-					buffer.append(entity);
-				}
+				throw e;
 			}
 		}
+		finally
+		{
+			context.remove(OgnlValueStack.THROW_EXCEPTION_ON_FAILURE);
+			ReflectionContextState.clear(context);
+		}
 
-		return (buffer == null) ? input : buffer.toString();
+		return (value != null) ? value : context.get(name);
 	}
 
 	/**
@@ -124,19 +194,29 @@ public final class ActionUtils
 	 */
 	public static Object getActionValue(OgnlValueStack valueStack, String name) throws JspTagException
 	{
-		if (!ACCEPTED_PATTERN.matcher(name).matches())
-		{
-			throw new JspTagException("Invalid name for a property: " + name);
-		}
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+		boolean found = false;
 
 		try
 		{
-			return valueStack.findValue(name, true);
+			Object value = findValue(valueStack, name, ExpressionCache.getInstance().getExpression(name));
+			found = true;
+
+			return value;
+		}
+		catch (JspTagException e)
+		{
+			throw e;
 		}
 		catch (Exception e)
 		{
 			throw new JspTagException("Unable to access the specified property: " + name, e);
 		}
+		finally
+		{
+			metrics.recordLookup(valueStack, name, start, found);
+		}
 	}
 
 	/**
@@ -174,6 +254,60 @@ public final class ActionUtils
 		}
 	}
 
+	/**
+	 * Gets the text provider for the page, which like the Struts text tag is
+	 * the first object on the value stack that is one, usually the action.
+	 * @param pageContext the page context.
+	 * @return the text provider or null if there is no value stack or nothing
+	 * on it is a text provider.
+	 */
+	static TextProvider getTextProvider(PageContext pageContext)
+	{
+		Object valueStack = pageContext.getAttribute("struts.valueStack", PageContext.REQUEST_SCOPE);
+
+		if (valueStack instanceof OgnlValueStack)
+		{
+			for (Object object : ((OgnlValueStack)valueStack).getRoot())
+			{
+				if (object instanceof TextProvider)
+				{
+					return (TextProvider)object;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the value of a property from a bean rather than from the value
+	 * stack, using the value stack's OGNL context so the same member access
+	 * rules apply.
+	 * @param valueStack the value stack.
+	 * @param bean the bean to read the property from.
+	 * @param name the name of the property to retrieve.
+	 * @return the value from the bean matching the name.
+	 * @throws JspTagException if an error occurred.
+	 */
+	static Object getPropertyValue(OgnlValueStack valueStack, Object bean, String name) throws JspTagException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+		boolean found = false;
+
+		try
+		{
+			Object value = findPropertyValue(valueStack, bean, name, ExpressionCache.getInstance().getExpression(name));
+			found = true;
+
+			return value;
+		}
+		finally
+		{
+			metrics.recordLookup(valueStack, name, start, found);
+		}
+	}
+
 	/**
 	 * Gets the Struts OGNL value stack.
 	 * @param pageContext the page context.
@@ -193,6 +327,16 @@ public final class ActionUtils
 		return valueStack;
 	}
 
+	/**
+	 * Determines whether a name is limited to property retrieval.
+	 * @param name the name of the property.
+	 * @return true if the name matches the accepted pattern.
+	 */
+	static boolean isAcceptedName(String name)
+	{
+		return ACCEPTED_PATTERN.matcher(name).matches();
+	}
+
 	/**
 	 * Determines whether a checkbox, radio button or select option is currently
 	 * selected based on a property from the action bean.
@@ -205,51 +349,19 @@ public final class ActionUtils
 	 */
 	public static boolean isSelected(OgnlValueStack valueStack, String name, String value) throws JspTagException
 	{
-		Object actionValue = ActionUtils.getActionValue(valueStack, name);
-
-		boolean selected = false;
-
-		if (actionValue != null)
-		{
-			if (actionValue.getClass().isArray())
-			{
-				for (Object item : (Object[])actionValue)
-				{
-					if ((item != null) && item.toString().equals(value))
-					{
-						selected = true;
-						break;
-					}
-				}
-			}
-			else if (actionValue instanceof List)
-			{
-				for (Object item : (List<?>)actionValue)
-				{
-					if ((item != null) && item.toString().equals(value))
-					{
-						selected = true;
-						break;
-					}
-				}
-			}
-			else if (actionValue instanceof Map)
-			{
-				for (Object item : ((Map<?, ?>)actionValue).values())
-				{
-					if ((item != null) && item.toString().equals(value))
-					{
-						selected = true;
-						break;
-					}
-				}
-			}
-			else
-			{
-				selected = actionValue.toString().equals(value);
-			}
-		}
+		return isSelected(ActionUtils.getActionValue(valueStack, name), value);
+	}
 
-		return selected;
+	/**
+	 * Determines whether a checkbox, radio button or select option is currently
+	 * selected based on a property value already retrieved from the action bean.
+	 * @param actionValue the property value.
+	 * @param value the value that an array, collection or map value should be
+	 * tested against to see if the control is checked.
+	 * @return true if is checked.
+	 */
+	public static boolean isSelected(Object actionValue, String value)
+	{
+		return SelectionMatcher.isSelected(actionValue, value);
 	}
 }
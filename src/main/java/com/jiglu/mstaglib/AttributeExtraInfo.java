@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.servlet.jsp.tagext.TagData;
+import javax.servlet.jsp.tagext.TagExtraInfo;
+import javax.servlet.jsp.tagext.ValidationMessage;
+
+/**
+ * Checks the literal attribute values of the form tags when a page is
+ * translated. The type of an input is written as it is so it must be one of
+ * the HTML input types, in any case, and the checked, disabled, labels and required
+ * attributes must be true, false or the attribute name, as any other value is
+ * silently treated as if the attribute wasn't set. An option with a key must
+ * have a value, as the localized label can't be tested against the selection.
+ */
+public final class AttributeExtraInfo extends TagExtraInfo
+{
+	/** The HTML input types. */
+	private static final Set<String> INPUT_TYPES = new HashSet<>(Arrays.asList("button", "checkbox", "color", "date",
+		"datetime-local", "email", "file", "hidden", "image", "month", "number", "password", "radio", "range", "reset",
+		"search", "submit", "tel", "text", "time", "url", "week"));
+
+	/** The attributes that are either set or not. */
+	private static final String[] BOOLEAN_ATTRIBUTES = {"checked", "disabled", "labels", "required"};
+
+	@Override
+	public ValidationMessage[] validate(TagData data)
+	{
+		List<ValidationMessage> messages = new ArrayList<>();
+
+		if (getTagInfo().getTagName().equals("input"))
+		{
+			String type = data.getAttributeString("type");
+
+			if ((type != null) && !INPUT_TYPES.contains(type.toLowerCase(Locale.ROOT)))
+			{
+				messages.add(new ValidationMessage(null, "Invalid type for an input: " + type));
+			}
+		}
+
+		if ((data.getAttribute("key") != null) && (data.getAttribute("value") == null))
+		{
+			messages.add(new ValidationMessage(null, "A value is required with a key"));
+		}
+
+		for (String attribute : BOOLEAN_ATTRIBUTES)
+		{
+			// Request time values are reported as a marker object rather than a string
+			Object value = data.getAttribute(attribute);
+
+			if ((value instanceof String) && !isBoolean((String)value, attribute))
+			{
+				messages.add(new ValidationMessage(null, "Invalid value for " + attribute + ": " + value));
+			}
+		}
+
+		return messages.isEmpty() ? null : messages.toArray(new ValidationMessage[messages.size()]);
+	}
+
+	/**
+	 * Determines whether a literal value for a boolean attribute is one that
+	 * is understood.
+	 * @param value the value.
+	 * @param name the attribute name.
+	 * @return true if the value is true, false or the attribute name.
+	 */
+	private static boolean isBoolean(String value, String name)
+	{
+		return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false") || value.equalsIgnoreCase(name);
+	}
+}
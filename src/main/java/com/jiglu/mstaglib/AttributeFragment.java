@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An attribute with a literal value, rendered with its value escaped when it
+ * is created so that writing it out is a single write. The Jasper tag plugins
+ * declare one of these as a constant of the compiled page for each literal
+ * dynamic attribute and pass it in place of the value.
+ */
+public final class AttributeFragment
+{
+	private final String m_markup;
+
+	/**
+	 * Creates a new fragment.
+	 * @param markup the rendered attribute including its leading space.
+	 */
+	private AttributeFragment(String markup)
+	{
+		m_markup = markup;
+	}
+
+	/**
+	 * Renders a literal attribute.
+	 * @param name the attribute name.
+	 * @param value the attribute value, which is escaped.
+	 * @return the fragment.
+	 */
+	public static AttributeFragment of(String name, String value)
+	{
+		return new AttributeFragment(' ' + name + "=\"" + Escaper.escape(value) + '"');
+	}
+
+	@Override
+	public String toString()
+	{
+		return m_markup;
+	}
+
+	/**
+	 * Writes out the attribute.
+	 * @param out the writer.
+	 * @throws IOException if an error occurred writing.
+	 */
+	void write(Writer out) throws IOException
+	{
+		out.write(m_markup);
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Compact store for the dynamic attributes of a tag, kept in the order they
+ * were set so the rendered attribute order is stable. The names and values are
+ * held in alternate slots of a single array which isn't allocated until the
+ * first attribute is set and is kept when cleared, so a pooled handler doesn't
+ * allocate again on each use.
+ */
+final class AttributeList
+{
+	/** An empty list, which must never have attributes put in it. */
+	static final AttributeList EMPTY = new AttributeList();
+
+	/** The number of attributes allocated for the first attribute. */
+	private static final int INITIAL_CAPACITY = 4;
+
+	private Object[] m_entries;
+
+	private int m_size;
+
+	/**
+	 * Creates a new empty list.
+	 */
+	AttributeList()
+	{
+	}
+
+	/**
+	 * Creates a new list over an array of alternate names and values.
+	 * @param entries the names and values.
+	 */
+	private AttributeList(Object[] entries)
+	{
+		m_entries = entries;
+		m_size = entries.length / 2;
+	}
+
+	/**
+	 * Gets a list over an array of alternate names and values without copying
+	 * them.
+	 * @param entries the names and values, which may be null.
+	 * @return the list.
+	 */
+	static AttributeList of(Object[] entries)
+	{
+		return ((entries == null) || (entries.length < 2)) ? EMPTY : new AttributeList(entries);
+	}
+
+	/**
+	 * Removes all of the attributes.
+	 */
+	void clear()
+	{
+		if (m_entries != null)
+		{
+			Arrays.fill(m_entries, 0, m_size * 2, null);
+		}
+
+		m_size = 0;
+	}
+
+	/**
+	 * Determines whether there are no attributes.
+	 * @return true if empty.
+	 */
+	boolean isEmpty()
+	{
+		return m_size == 0;
+	}
+
+	/**
+	 * Sets an attribute, replacing the value if it is already set.
+	 * @param name the attribute name.
+	 * @param value the attribute value.
+	 */
+	void put(String name, Object value)
+	{
+		int length = m_size * 2;
+
+		for (int i = 0; i < length; i += 2)
+		{
+			if (m_entries[i].equals(name))
+			{
+				m_entries[i + 1] = value;
+
+				return;
+			}
+		}
+
+		if (m_entries == null)
+		{
+			m_entries = new Object[INITIAL_CAPACITY * 2];
+		}
+		else if (length == m_entries.length)
+		{
+			m_entries = Arrays.copyOf(m_entries, length * 2);
+		}
+
+		m_entries[length] = name;
+		m_entries[length + 1] = value;
+		m_size++;
+	}
+
+	/**
+	 * Writes out the attributes in the order they were set, escaping the
+	 * values unless they are already rendered fragments.
+	 * @param out the writer.
+	 * @throws IOException if an error occurred writing.
+	 */
+	void write(Writer out) throws IOException
+	{
+		int length = m_size * 2;
+
+		for (int i = 0; i < length; i += 2)
+		{
+			Object value = m_entries[i + 1];
+
+			if (value instanceof AttributeFragment)
+			{
+				((AttributeFragment)value).write(out);
+			}
+			else
+			{
+				TagWriter.writeEscapedAttribute(out, (String)m_entries[i], String.valueOf(value));
+			}
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+/**
+ * Creates a group of checkbox &lt;input&gt; HTML tags for a list of items,
+ * populated from a Struts 2 action.
+ */
+public final class Checkboxes extends ChoiceGroup
+{
+	/** Serial version UID */
+	private static final long serialVersionUID = -6731458409223871950L;
+
+	/**
+	 * Creates a new tag.
+	 */
+	public Checkboxes()
+	{
+		super("checkbox");
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.BodyTagSupport;
+import javax.servlet.jsp.tagext.DynamicAttributes;
+
+/**
+ * Base for the tags that create a group of &lt;input&gt; HTML tags, one for
+ * each of a list of items, populated from a Struts 2 action. The property is
+ * resolved once for the whole group rather than once per input.
+ */
+public abstract class ChoiceGroup extends BodyTagSupport implements DynamicAttributes
+{
+	private final String m_type;
+
+	private String m_name;
+
+	private Object m_items;
+
+	private String m_itemValue;
+
+	private String m_itemLabel;
+
+	private String m_cacheKey;
+
+	private String m_labels;
+
+	private String m_disabled;
+
+	private String m_required;
+
+	private String m_class;
+
+	private String m_errorClass;
+
+	private final AttributeList m_dynamicAttributes = new AttributeList();
+
+	/** The plan from the last use, kept while the static attributes stay the same. */
+	private RenderPlan m_plan;
+
+	/** Serial version UID */
+	private static final long serialVersionUID = -2684930911356208477L;
+
+	/**
+	 * Creates a new tag.
+	 * @param type the input type.
+	 */
+	ChoiceGroup(String type)
+	{
+		m_type = type;
+	}
+
+	@Override
+	public int doEndTag() throws JspException
+	{
+		m_plan = RenderPlan.input(m_plan, m_type, m_disabled, m_required);
+
+		TagRenderer.choices(pageContext, m_plan, m_name, m_items, m_itemValue, m_itemLabel, m_cacheKey, m_labels,
+			m_class, m_errorClass, m_dynamicAttributes);
+
+		// Clear the state for this use so the handler can be reused
+		m_class = null;
+		m_dynamicAttributes.clear();
+
+		return EVAL_PAGE;
+	}
+
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_name = null;
+		m_items = null;
+		m_itemValue = null;
+		m_itemLabel = null;
+		m_cacheKey = null;
+		m_labels = null;
+		m_disabled = null;
+		m_required = null;
+		m_class = null;
+		m_errorClass = null;
+		m_dynamicAttributes.clear();
+		m_plan = null;
+	}
+
+	/**
+	 * Sets the cache key.
+	 * @param cacheKey the cache key.
+	 */
+	public void setCacheKey(String cacheKey)
+	{
+		m_cacheKey = cacheKey;
+	}
+
+	/**
+	 * Sets the disabled.
+	 * @param disabled the disabled.
+	 */
+	public void setDisabled(String disabled)
+	{
+		m_disabled = disabled;
+	}
+
+	@Override
+	public void setDynamicAttribute(String uri, String localName, Object value) throws JspException
+	{
+		if (localName.equals("class"))
+		{
+			m_class = (String)value;
+		}
+		else
+		{
+			m_dynamicAttributes.put(localName, value);
+		}
+	}
+
+	/**
+	 * Sets the error class.
+	 * @param errorClass the error class.
+	 */
+	public void setErrorClass(String errorClass)
+	{
+		m_errorClass = errorClass;
+	}
+
+	/**
+	 * Sets the item label.
+	 * @param itemLabel the item label.
+	 */
+	public void setItemLabel(String itemLabel)
+	{
+		m_itemLabel = itemLabel;
+	}
+
+	/**
+	 * Sets the items.
+	 * @param items the items.
+	 */
+	public void setItems(Object items)
+	{
+		m_items = items;
+	}
+
+	/**
+	 * Sets the item value.
+	 * @param itemValue the item value.
+	 */
+	public void setItemValue(String itemValue)
+	{
+		m_itemValue = itemValue;
+	}
+
+	/**
+	 * Sets the labels.
+	 * @param labels the labels.
+	 */
+	public void setLabels(String labels)
+	{
+		m_labels = labels;
+	}
+
+	/**
+	 * Sets the name.
+	 * @param name the name.
+	 */
+	public void setName(String name)
+	{
+		m_name = name;
+	}
+
+	/**
+	 * Sets the required.
+	 * @param required the required.
+	 */
+	public void setRequired(String required)
+	{
+		m_required = required;
+	}
+}
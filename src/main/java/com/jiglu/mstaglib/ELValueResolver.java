@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.ELResolver;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+/**
+ * Resolves values with the JSP EL resolvers of the page, so a property name
+ * such as <code>order.lines[0].qty</code> finds <code>order</code> in the page,
+ * request, session or application scope without going through OGNL. Field
+ * errors are taken from the keys of a map in the <code>fieldErrors</code>
+ * scoped attribute, which on a Struts page is the action's field errors.
+ * <p>
+ * Scoped attributes can change between tags without notice, so unlike the
+ * Struts resolver values aren't reused between tags.
+ * <p>
+ * The names are split into their steps once and cached. Up to 2048 names are
+ * held, which can be changed with the
+ * <code>com.jiglu.mstaglib.elNameCacheSize</code> system property.
+ */
+public final class ELValueResolver implements ValueResolver<ELValueResolver.State>
+{
+	/** The scoped attribute holding the field errors. */
+	private static final String FIELD_ERRORS = "fieldErrors";
+
+	/** The maximum number of names held. */
+	private static final int MAXIMUM_NAMES = Integer.getInteger("com.jiglu.mstaglib.elNameCacheSize", 2048);
+
+	/** The parsed steps of each name. */
+	private static final ConcurrentMap<String, Object[]> STEPS = new ConcurrentHashMap<>();
+
+	@Override
+	public State getState(PageContext pageContext, State previous)
+	{
+		return new State(pageContext);
+	}
+
+	@Override
+	public Object getValue(State state, String name) throws JspTagException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+		boolean found = false;
+
+		try
+		{
+			Object value = resolve(state.m_pageContext.getELContext(), null, getSteps(name), name);
+			found = true;
+
+			return value;
+		}
+		finally
+		{
+			metrics.recordLookup(state.m_pageContext.getRequest(), name, start, found);
+		}
+	}
+
+	@Override
+	public Object getValue(State state, Object bean, String name) throws JspTagException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+		boolean found = false;
+
+		try
+		{
+			Object[] steps = getSteps(name);
+
+			// Simple bean paths can be read straight from the bean
+			Object value = PropertyAccessors.getValue(bean, name);
+
+			if (value == PropertyAccessors.UNRESOLVED)
+			{
+				value = resolve(state.m_pageContext.getELContext(), bean, steps, name);
+			}
+
+			found = true;
+
+			return value;
+		}
+		finally
+		{
+			metrics.recordLookup(state.m_pageContext.getRequest(), name, start, found);
+		}
+	}
+
+	@Override
+	public boolean hasFieldError(State state, String name)
+	{
+		Object fieldErrors = state.m_pageContext.findAttribute(FIELD_ERRORS);
+
+		return (fieldErrors instanceof Map) && ((Map<?, ?>)fieldErrors).containsKey(name);
+	}
+
+	@Override
+	public void prepare(String name) throws JspTagException
+	{
+		getSteps(name);
+	}
+
+	/**
+	 * Gets the steps of a property name, checking and parsing it if it hasn't
+	 * been already.
+	 * @param name the property name.
+	 * @return the property names, map keys and list indexes to resolve in turn.
+	 * @throws JspTagException if the name isn't valid.
+	 */
+	private static Object[] getSteps(String name) throws JspTagException
+	{
+		Object[] steps = STEPS.get(name);
+
+		if (steps != null)
+		{
+			return steps;
+		}
+
+		if (!ActionUtils.isAcceptedName(name))
+		{
+			throw new JspTagException("Invalid name for a property: " + name);
+		}
+
+		steps = parse(name);
+
+		// The size check isn't atomic so the cache may overshoot by a few entries under contention
+		if (STEPS.size() < MAXIMUM_NAMES)
+		{
+			STEPS.putIfAbsent(name, steps);
+		}
+
+		return steps;
+	}
+
+	/**
+	 * Parses a property name that has been checked against the accepted
+	 * pattern into its steps.
+	 * @param name the property name.
+	 * @return the steps, with property names and map keys as strings and list
+	 * indexes as longs.
+	 */
+	private static Object[] parse(String name)
+	{
+		List<Object> steps = new ArrayList<>();
+		int length = name.length();
+		int i = 0;
+
+		while (i < length)
+		{
+			char c = name.charAt(i);
+			int end;
+
+			if ((c == '[') || (c == '('))
+			{
+				char close = (c == '[') ? ']' : ')';
+
+				if (name.charAt(i + 1) == '\'')
+				{
+					// A quoted key
+					end = name.indexOf('\'', i + 2);
+					steps.add(name.substring(i + 2, end));
+					end++;
+				}
+				else
+				{
+					// An index
+					end = name.indexOf(close, i + 1);
+					steps.add(Long.valueOf(name.substring(i + 1, end)));
+				}
+
+				i = end + 1;
+			}
+			else
+			{
+				// A property name, either at the start or following a dot
+				if (c == '.')
+				{
+					i++;
+				}
+
+				end = i;
+
+				while ((end < length) && (name.charAt(end) != '.') && (name.charAt(end) != '[') &&
+					(name.charAt(end) != '('))
+				{
+					end++;
+				}
+
+				steps.add(name.substring(i, end));
+				i = end;
+			}
+		}
+
+		return steps.toArray();
+	}
+
+	/**
+	 * Resolves the steps of a property name in turn, with a null value
+	 * resolving to null as it does in EL.
+	 * @param elContext the EL context.
+	 * @param base the bean to resolve the first step against or null to
+	 * resolve it as a scoped attribute.
+	 * @param steps the steps.
+	 * @param name the property name.
+	 * @return the value.
+	 * @throws JspTagException if a step couldn't be resolved.
+	 */
+	private static Object resolve(ELContext elContext, Object base, Object[] steps, String name)
+		throws JspTagException
+	{
+		ELResolver resolver = elContext.getELResolver();
+		Object value = base;
+
+		try
+		{
+			for (int i = 0; i < steps.length; i++)
+			{
+				if ((value == null) && ((i > 0) || (base != null)))
+				{
+					return null;
+				}
+
+				elContext.setPropertyResolved(false);
+				value = resolver.getValue(elContext, value, steps[i]);
+
+				if (!elContext.isPropertyResolved())
+				{
+					throw new JspTagException("Unable to access the specified property: " + name);
+				}
+			}
+		}
+		catch (ELException e)
+		{
+			throw new JspTagException("Unable to access the specified property: " + name, e);
+		}
+
+		return value;
+	}
+
+	/**
+	 * The page values are resolved for.
+	 */
+	static final class State
+	{
+		private final PageContext m_pageContext;
+
+		/**
+		 * Creates a new state.
+		 * @param pageContext the page context.
+		 */
+		State(PageContext pageContext)
+		{
+			m_pageContext = pageContext;
+		}
+	}
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Escapes the characters that need entities in HTML attributes and text:
+ * &lt;, &gt;, &amp; and &quot;. A lookup table finds them and the clean runs
+ * between them are copied in bulk rather than character by character.
+ */
+final class Escaper
+{
+	/** One past the highest character that needs escaping, so most characters are rejected with one comparison. */
+	private static final int LIMIT = '>' + 1;
+
+	/** The entity for each character below the limit, or null if it doesn't need escaping. */
+	private static final String[] ENTITIES = new String[LIMIT];
+
+	static
+	{
+		ENTITIES['<'] = "&lt;";
+		ENTITIES['>'] = "&gt;";
+		ENTITIES['&'] = "&amp;";
+		ENTITIES['"'] = "&quot;";
+	}
+
+	/** The number of characters copied or read at a time when streaming. */
+	static final int CHUNK_SIZE = 8192;
+
+	/** Private default constructor to prevent external instantiation. */
+	private Escaper()
+	{
+	}
+
+	/**
+	 * Escapes a string.
+	 * @param input the string to escape.
+	 * @return the escaped string, which is the input itself if nothing needed
+	 * escaping.
+	 */
+	static String escape(String input)
+	{
+		int length = input.length();
+		int start = indexOfSpecial(input, 0, length);
+
+		if (start < 0)
+		{
+			return input;
+		}
+
+		// Size the result exactly so it never has to grow
+		int escapedLength = length;
+
+		for (int i = start; i < length; i++)
+		{
+			char c = input.charAt(i);
+
+			if ((c < LIMIT) && (ENTITIES[c] != null))
+			{
+				escapedLength += ENTITIES[c].length() - 1;
+			}
+		}
+
+		StringBuilder buffer = new StringBuilder(escapedLength);
+
+		try
+		{
+			escape(input, 0, length, start, buffer);
+		}
+		catch (IOException e)
+		{
+			// Can't happen with a string builder
+			throw new IllegalStateException(e);
+		}
+
+		return buffer.toString();
+	}
+
+	/**
+	 * Escapes a character sequence to an appendable.
+	 * @param input the character sequence to escape.
+	 * @param out the appendable to append the escaped characters to.
+	 * @throws IOException if an error occurred appending.
+	 */
+	static void escape(CharSequence input, Appendable out) throws IOException
+	{
+		int length = input.length();
+
+		escape(input, 0, length, indexOfSpecial(input, 0, length), out);
+	}
+
+	/**
+	 * Escapes part of a character array to a writer.
+	 * @param input the character array to escape.
+	 * @param offset the index of the first character to escape.
+	 * @param length the number of characters to escape.
+	 * @param out the writer to write the escaped characters to.
+	 * @throws IOException if an error occurred writing.
+	 */
+	static void escape(char[] input, int offset, int length, Writer out) throws IOException
+	{
+		int end = offset + length;
+		int start = offset;
+		int i = indexOfSpecial(input, offset, end);
+
+		while (i >= 0)
+		{
+			// Write the clean run before this character followed by the entity
+			if (i > start)
+			{
+				out.write(input, start, i - start);
+			}
+
+			out.write(ENTITIES[input[i]]);
+			start = i + 1;
+			i = indexOfSpecial(input, start, end);
+		}
+
+		if (start < end)
+		{
+			out.write(input, start, end - start);
+		}
+	}
+
+	/**
+	 * Escapes a character sequence to a writer a chunk at a time, so a large
+	 * sequence is never copied whole. Strings are written directly and string
+	 * builders copy each chunk in bulk.
+	 * @param input the character sequence to escape.
+	 * @param out the writer to write the escaped characters to.
+	 * @throws IOException if an error occurred writing.
+	 */
+	static void escape(CharSequence input, Writer out) throws IOException
+	{
+		if (input instanceof String)
+		{
+			escape((String)input, out);
+
+			return;
+		}
+
+		int length = input.length();
+		char[] buffer = new char[Math.min(length, CHUNK_SIZE)];
+
+		for (int start = 0; start < length; start += buffer.length)
+		{
+			int end = Math.min(start + buffer.length, length);
+
+			if (input instanceof StringBuilder)
+			{
+				((StringBuilder)input).getChars(start, end, buffer, 0);
+			}
+			else if (input instanceof StringBuffer)
+			{
+				((StringBuffer)input).getChars(start, end, buffer, 0);
+			}
+			else
+			{
+				for (int i = start; i < end; i++)
+				{
+					buffer[i - start] = input.charAt(i);
+				}
+			}
+
+			escape(buffer, 0, end - start, out);
+		}
+	}
+
+	/**
+	 * Escapes everything a reader has left to a writer a chunk at a time. The
+	 * reader isn't closed.
+	 * @param input the reader to escape.
+	 * @param out the writer to write the escaped characters to.
+	 * @throws IOException if an error occurred reading or writing.
+	 */
+	static void escape(Reader input, Writer out) throws IOException
+	{
+		char[] buffer = new char[CHUNK_SIZE];
+		int length;
+
+		while ((length = input.read(buffer)) >= 0)
+		{
+			escape(buffer, 0, length, out);
+		}
+	}
+
+	/**
+	 * Escapes a string to a writer.
+	 * @param input the string to escape.
+	 * @param out the writer to write the escaped string to.
+	 * @throws IOException if an error occurred writing.
+	 */
+	static void escape(String input, Writer out) throws IOException
+	{
+		int length = input.length();
+		int start = 0;
+		int i = indexOfSpecial(input, 0, length);
+
+		while (i >= 0)
+		{
+			// Write the clean run before this character followed by the entity
+			if (i > start)
+			{
+				out.write(input, start, i - start);
+			}
+
+			out.write(ENTITIES[input.charAt(i)]);
+			start = i + 1;
+			i = indexOfSpecial(input, start, length);
+		}
+
+		if (start < length)
+		{
+			out.write(input, start, length - start);
+		}
+	}
+
+	/**
+	 * Escapes part of a character sequence to an appendable, starting from
+	 * the first character that needs escaping.
+	 * @param input the character sequence.
+	 * @param start the start of the part to escape.
+	 * @param end the end of the part to escape.
+	 * @param special the index of the first character that needs escaping or
+	 * -1 if there isn't one.
+	 * @param out the appendable to append the escaped characters to.
+	 * @throws IOException if an error occurred appending.
+	 */
+	private static void escape(CharSequence input, int start, int end, int special, Appendable out)
+		throws IOException
+	{
+		int i = special;
+
+		while (i >= 0)
+		{
+			// Append the clean run before this character followed by the entity
+			if (i > start)
+			{
+				out.append(input, start, i);
+			}
+
+			out.append(ENTITIES[input.charAt(i)]);
+			start = i + 1;
+			i = indexOfSpecial(input, start, end);
+		}
+
+		if (start < end)
+		{
+			out.append(input, start, end);
+		}
+	}
+
+	/**
+	 * Finds the next character that needs escaping in a character array.
+	 * @param input the character array to search.
+	 * @param from the index to search from.
+	 * @param end the index to search to.
+	 * @return the index or -1 if there isn't one.
+	 */
+	private static int indexOfSpecial(char[] input, int from, int end)
+	{
+		for (int i = from; i < end; i++)
+		{
+			char c = input[i];
+
+			if ((c < LIMIT) && (ENTITIES[c] != null))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the next character that needs escaping.
+	 * @param input the character sequence to search.
+	 * @param from the index to search from.
+	 * @param end the index to search to.
+	 * @return the index or -1 if there isn't one.
+	 */
+	private static int indexOfSpecial(CharSequence input, int from, int end)
+	{
+		for (int i = from; i < end; i++)
+		{
+			char c = input.charAt(i);
+
+			if ((c < LIMIT) && (ENTITIES[c] != null))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the next character that needs escaping in a string. This is kept
+	 * separate from the character sequence version so the calls to
+	 * {@code charAt} are direct.
+	 * @param input the string to search.
+	 * @param from the index to search from.
+	 * @param end the index to search to.
+	 * @return the index or -1 if there isn't one.
+	 */
+	private static int indexOfSpecial(String input, int from, int end)
+	{
+		for (int i = from; i < end; i++)
+		{
+			char c = input.charAt(i);
+
+			if ((c < LIMIT) && (ENTITIES[c] != null))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.jsp.JspTagException;
+
+import ognl.Ognl;
+import ognl.OgnlException;
+
+/**
+ * Bounded cache of the parsed OGNL expressions for property names. A name is
+ * only added once it has been checked against the accepted pattern, so a
+ * cached name needs neither checking nor parsing again.
+ * <p>
+ * Once the cache is full further names are still checked and parsed but not
+ * added, so names generated from indexes such as <code>rows[0].qty</code> to
+ * <code>rows[999].qty</code> can't grow it without limit. The maximum size
+ * can be changed with the <code>com.jiglu.mstaglib.expressionCacheSize</code>
+ * system property.
+ */
+final class ExpressionCache
+{
+	/** The default maximum number of names held. */
+	private static final int DEFAULT_MAXIMUM_SIZE = 2048;
+
+	/** The shared instance. */
+	private static final ExpressionCache INSTANCE =
+		new ExpressionCache(Integer.getInteger("com.jiglu.mstaglib.expressionCacheSize", DEFAULT_MAXIMUM_SIZE));
+
+	private final ConcurrentMap<String, Object> m_expressions = new ConcurrentHashMap<>();
+
+	private final int m_maximumSize;
+
+	private final LongAdder m_hits = new LongAdder();
+
+	private final LongAdder m_misses = new LongAdder();
+
+	/**
+	 * Creates a new cache.
+	 * @param maximumSize the maximum number of names held.
+	 */
+	private ExpressionCache(int maximumSize)
+	{
+		m_maximumSize = maximumSize;
+	}
+
+	/**
+	 * Gets the shared instance.
+	 * @return the cache.
+	 */
+	static ExpressionCache getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Removes all of the cached expressions and resets the counters.
+	 */
+	void clear()
+	{
+		m_expressions.clear();
+		m_hits.reset();
+		m_misses.reset();
+	}
+
+	/**
+	 * Gets the parsed expression for a property name, checking and parsing it
+	 * if it isn't already cached.
+	 * @param name the property name.
+	 * @return the parsed expression.
+	 * @throws JspTagException if the name isn't valid.
+	 */
+	Object getExpression(String name) throws JspTagException
+	{
+		Object expression = m_expressions.get(name);
+
+		if (expression != null)
+		{
+			m_hits.increment();
+
+			return expression;
+		}
+
+		m_misses.increment();
+
+		if (!ActionUtils.isAcceptedName(name))
+		{
+			throw new JspTagException("Invalid name for a property: " + name);
+		}
+
+		try
+		{
+			expression = Ognl.parseExpression(name);
+		}
+		catch (OgnlException e)
+		{
+			throw new JspTagException("Unable to access the specified property: " + name, e);
+		}
+
+		// The size check isn't atomic so the cache may overshoot by a few entries under contention
+		if (m_expressions.size() < m_maximumSize)
+		{
+			Object existing = m_expressions.putIfAbsent(name, expression);
+
+			if (existing != null)
+			{
+				expression = existing;
+			}
+		}
+
+		return expression;
+	}
+
+	/**
+	 * Gets the number of lookups that found a cached expression.
+	 * @return the number of hits.
+	 */
+	long getHits()
+	{
+		return m_hits.sum();
+	}
+
+	/**
+	 * Gets the maximum number of names held.
+	 * @return the maximum size.
+	 */
+	int getMaximumSize()
+	{
+		return m_maximumSize;
+	}
+
+	/**
+	 * Gets the number of lookups that had to check and parse the name.
+	 * @return the number of misses.
+	 */
+	long getMisses()
+	{
+		return m_misses.sum();
+	}
+
+	/**
+	 * Gets the number of names held.
+	 * @return the size.
+	 */
+	int size()
+	{
+		return m_expressions.size();
+	}
+}
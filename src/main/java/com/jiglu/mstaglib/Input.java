@@ -19,19 +19,10 @@
 
 package com.jiglu.mstaglib;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import javax.servlet.jsp.JspException;
-import javax.servlet.jsp.JspTagException;
 import javax.servlet.jsp.tagext.BodyTagSupport;
 import javax.servlet.jsp.tagext.DynamicAttributes;
 
-import com.opensymphony.xwork2.ognl.OgnlValueStack;
-
 /**
  * Creates an &lt;input&gt; HTML tag populated from a Struts 2 action.
  */
@@ -43,6 +34,8 @@ public final class Input extends BodyTagSupport implements DynamicAttributes
 
 	private String m_value;
 
+	private String m_format;
+
 	private String m_checked;
 
 	private String m_disabled;
@@ -53,120 +46,47 @@ public final class Input extends BodyTagSupport implements DynamicAttributes
 
 	private String m_errorClass;
 
-	private final Map<String, Object> m_dynamicAttributes = new HashMap<>();
+	private final AttributeList m_dynamicAttributes = new AttributeList();
+
+	/** The plan from the last use, kept while the static attributes stay the same. */
+	private RenderPlan m_plan;
 
 	/** Serial version UID */
 	private static final long serialVersionUID = 8589423684828945795L;
 
-	@SuppressWarnings("resource")
 	@Override
 	public int doEndTag() throws JspException
 	{
-		// Validate we have what we need
-		if (m_type == null)
-		{
-			throw new JspTagException("No type attribute supplied");
-		}
+		m_plan = RenderPlan.input(m_plan, m_type, m_disabled, m_required);
 
-		if (m_name == null)
-		{
-			throw new JspTagException("No name attribute supplied");
-		}
-
-		// Get the value stack
-		OgnlValueStack valueStack = ActionUtils.getValueStack(pageContext);
+		TagRenderer.input(pageContext, m_plan, m_name, m_value, m_format, m_checked, m_class, m_errorClass,
+			m_dynamicAttributes);
 
-		// Build up the tag
-		StringBuilder output = new StringBuilder(128);
-
-		output.append("<input type=\"").append(m_type).append("\" name=\"").append(ActionUtils.escapeEntities(m_name))
-			.append('"');
-
-		// Handle checked and value according to type
-		if (m_type.equals("checkbox") || m_type.equals("radio"))
-		{
-			if (m_checked != null)
-			{
-				if (m_checked.equalsIgnoreCase("true") || m_checked.equalsIgnoreCase("checked"))
-				{
-					output.append(" checked=\"checked\"");
-				}
-			}
-			else
-			{
-				// We default to a value of true if none has been supplied
-				if (m_value == null)
-				{
-					m_value = "true";
-				}
-
-				if (ActionUtils.isSelected(valueStack, m_name, m_value))
-				{
-					output.append(" checked=\"checked\"");
-				}
-			}
-
-			output.append(" value=\"").append(m_value).append('"');
-		}
-		else if (!m_type.equals("file"))
-		{
-			if (m_value != null)
-			{
-				output.append(" value=\"").append(m_value).append('"');
-			}
-			else
-			{
-				output.append(" value=\"")
-					.append(ActionUtils.escapeEntities(ActionUtils.getActionValueString(valueStack, m_name)))
-					.append('"');
-			}
-		}
-
-		// Handle required attribute converting from boolean if needed
-		if ((m_required != null) && (m_required.equalsIgnoreCase("true") || m_required.equalsIgnoreCase("required")))
-		{
-			output.append(" required=\"required\"");
-		}
-
-		// Handle disabled attribute converting from boolean if needed
-		if ((m_disabled != null) && (m_disabled.equalsIgnoreCase("true") || m_disabled.equalsIgnoreCase("disabled")))
-		{
-			output.append(" disabled=\"disabled\"");
-		}
-
-		// If have an error then swap to the error class
-		Map<String, List<String>> fieldErrors = ActionUtils.getFieldErrors(valueStack);
-
-		if ((m_errorClass != null) && (fieldErrors != null) && fieldErrors.containsKey(m_name))
-		{
-			output.append(" class=\"").append(m_errorClass).append('"');
-		}
-		else if (m_class != null)
-		{
-			output.append(" class=\"").append(m_class).append('"');
-		}
-
-		// Handle dynamic attributes
-		for (Entry<String, Object> entry : m_dynamicAttributes.entrySet())
-		{
-			output.append(' ').append(entry.getKey()).append("=\"").append(entry.getValue()).append('"');
-		}
-
-		output.append(" />");
-
-		// Write it out
-		try
-		{
-			pageContext.getOut().print(output);
-		}
-		catch (IOException e)
-		{
-			throw new JspTagException(e);
-		}
+		// Clear the state for this use so the handler can be reused
+		m_class = null;
+		m_dynamicAttributes.clear();
 
 		return EVAL_PAGE;
 	}
 
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_type = null;
+		m_name = null;
+		m_value = null;
+		m_format = null;
+		m_checked = null;
+		m_disabled = null;
+		m_required = null;
+		m_class = null;
+		m_errorClass = null;
+		m_dynamicAttributes.clear();
+		m_plan = null;
+	}
+
 	/**
 	 * Sets the checked.
 	 * @param checked the checked.
@@ -207,6 +127,15 @@ public final class Input extends BodyTagSupport implements DynamicAttributes
 		m_errorClass = errorClass;
 	}
 
+	/**
+	 * Sets the format.
+	 * @param format the format.
+	 */
+	public void setFormat(String format)
+	{
+		m_format = format;
+	}
+
 	/**
 	 * Sets the name.
 	 * @param name the name.
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in buckets that double in size, so recording a
+ * duration is a bit count and an increment of a striped counter. Percentiles
+ * are reported as the upper bound of the bucket they fall in, which is within
+ * a factor of two of the true value.
+ */
+final class LatencyHistogram
+{
+	/** The number of buckets, the last of which holds everything over about 9 minutes. */
+	private static final int BUCKETS = 40;
+
+	private final LongAdder[] m_buckets = new LongAdder[BUCKETS];
+
+	private final LongAdder m_total = new LongAdder();
+
+	/**
+	 * Creates a new empty histogram.
+	 */
+	LatencyHistogram()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			m_buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Gets the counts in each bucket, where bucket <code>i</code> holds
+	 * durations below <code>2^i</code> nanoseconds that weren't in an earlier
+	 * bucket.
+	 * @return the counts.
+	 */
+	long[] getCounts()
+	{
+		long[] counts = new long[BUCKETS];
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = m_buckets[i].sum();
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Gets the mean duration.
+	 * @return the mean in nanoseconds or zero if nothing has been recorded.
+	 */
+	double getMean()
+	{
+		long count = 0;
+
+		for (LongAdder bucket : m_buckets)
+		{
+			count += bucket.sum();
+		}
+
+		return (count > 0) ? (double)m_total.sum() / count : 0;
+	}
+
+	/**
+	 * Gets an upper bound for a percentile of the durations.
+	 * @param percentile the percentile from 0 to 100.
+	 * @return the upper bound in nanoseconds or zero if nothing has been
+	 * recorded.
+	 */
+	long getPercentile(double percentile)
+	{
+		long[] counts = getCounts();
+		long count = 0;
+
+		for (long bucket : counts)
+		{
+			count += bucket;
+		}
+
+		// Find the bucket holding the duration at the percentile's rank
+		long rank = (long)Math.ceil(count * percentile / 100);
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+
+			if ((seen >= rank) && (seen > 0))
+			{
+				return 1L << i;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Records a duration.
+	 * @param nanos the duration in nanoseconds.
+	 */
+	void record(long nanos)
+	{
+		// Clocks can go backwards so treat a negative duration as zero
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+
+		m_buckets[Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+		m_total.add(nanos);
+	}
+
+	/**
+	 * Removes all of the recorded durations.
+	 */
+	void reset()
+	{
+		for (LongAdder bucket : m_buckets)
+		{
+			bucket.reset();
+		}
+
+		m_total.reset();
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.ServletContext;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+import com.opensymphony.xwork2.TextProvider;
+
+/**
+ * Escaped option labels looked up by key in one locale. Labels come from a
+ * named resource bundle, which is loaded whole and escaped the first time it
+ * is used in each of the locales it has, or otherwise from the text provider
+ * on the value stack, usually the action, whose labels are escaped and kept
+ * for each class of text provider as each key is first used. Either way they
+ * are shared between requests, so a label is only looked up in the bundles
+ * once.
+ * <p>
+ * The locale comes from the request, so only a limited number of locales are
+ * remembered for each bundle and class of text provider. A bundle is looked
+ * up again for each use in any other locale, though its labels are still
+ * shared with the locale it resolves to, while a text provider's labels are
+ * looked up for each use and aren't shared at all.
+ * <p>
+ * Labels from a text provider are kept as they were first resolved, so
+ * messages that include expressions evaluated against the value stack
+ * shouldn't be used as labels. Without a text provider, the bundle named by
+ * the <code>javax.servlet.jsp.jstl.fmt.localizationContext</code> context
+ * parameter shared with the JSTL formatting tags is used.
+ */
+final class LocalizedLabels
+{
+	/** Context parameter naming the bundle to use if there is no text provider. */
+	private static final String LOCALIZATION_CONTEXT = "javax.servlet.jsp.jstl.fmt.localizationContext";
+
+	/** The maximum number of labels held for each class of text provider and locale. */
+	private static final int MAXIMUM_LABELS = 4096;
+
+	/** The maximum number of locales held for each named bundle and class of text provider. */
+	private static final int MAXIMUM_LOCALES = 64;
+
+	/** The labels of each named bundle for each locale the bundle has. */
+	private static final ConcurrentMap<String, ConcurrentMap<Locale, Map<String, String>>> BUNDLES =
+		new ConcurrentHashMap<>();
+
+	/** The labels of each named bundle for each locale it has been used in. */
+	private static final ConcurrentMap<String, ConcurrentMap<Locale, LocalizedLabels>> BUNDLE_LOCALES =
+		new ConcurrentHashMap<>();
+
+	/** The labels resolved by each class of text provider for each locale. */
+	private static final ClassValue<ConcurrentMap<Locale, ConcurrentMap<String, String>>> PROVIDERS =
+		new ClassValue<>()
+		{
+			@Override
+			protected ConcurrentMap<Locale, ConcurrentMap<String, String>> computeValue(Class<?> type)
+			{
+				return new ConcurrentHashMap<>();
+			}
+		};
+
+	private final Map<String, String> m_labels;
+
+	private final TextProvider m_provider;
+
+	private final String m_source;
+
+	private final Locale m_locale;
+
+	private final boolean m_shared;
+
+	/**
+	 * Creates new labels.
+	 * @param labels the escaped labels keyed by key.
+	 * @param provider the text provider to resolve labels that aren't held
+	 * yet, or null if the labels are from a bundle and are all held.
+	 * @param source the name of the bundle or class of text provider the
+	 * labels come from.
+	 * @param locale the locale of the labels.
+	 * @param shared true if the labels are shared between requests, false if
+	 * they are only for this use.
+	 */
+	private LocalizedLabels(Map<String, String> labels, TextProvider provider, String source, Locale locale,
+		boolean shared)
+	{
+		m_labels = labels;
+		m_provider = provider;
+		m_source = source;
+		m_locale = locale;
+		m_shared = shared;
+	}
+
+	/**
+	 * Gets the labels for a page in the locale values are formatted for.
+	 * @param pageContext the page context.
+	 * @param context the render context for the request.
+	 * @param bundle the name of the bundle or null to use the text provider
+	 * on the value stack.
+	 * @return the labels.
+	 * @throws JspTagException if there is nowhere to look the labels up.
+	 */
+	static LocalizedLabels get(PageContext pageContext, RenderContext context, String bundle) throws JspTagException
+	{
+		Locale locale = context.getLocale(pageContext);
+		String name = bundle;
+
+		if (name == null)
+		{
+			TextProvider provider = ActionUtils.getTextProvider(pageContext);
+
+			if (provider != null)
+			{
+				Class<?> type = provider.getClass();
+				ConcurrentMap<Locale, ConcurrentMap<String, String>> locales = PROVIDERS.get(type);
+				ConcurrentMap<String, String> labels = locales.get(locale);
+				boolean shared = true;
+
+				if (labels == null)
+				{
+					labels = new ConcurrentHashMap<>();
+
+					// The size check isn't atomic so the cache may overshoot by a few entries under contention
+					if (locales.size() < MAXIMUM_LOCALES)
+					{
+						ConcurrentMap<String, String> existing = locales.putIfAbsent(locale, labels);
+
+						if (existing != null)
+						{
+							labels = existing;
+						}
+					}
+					else
+					{
+						shared = false;
+					}
+				}
+
+				return new LocalizedLabels(labels, provider, type.getName(), locale, shared);
+			}
+
+			ServletContext servletContext = pageContext.getServletContext();
+			name = (servletContext != null) ? servletContext.getInitParameter(LOCALIZATION_CONTEXT) : null;
+
+			if (name == null)
+			{
+				throw new JspTagException("There is no text provider or bundle to look up labels in");
+			}
+		}
+
+		ConcurrentMap<Locale, LocalizedLabels> locales =
+			BUNDLE_LOCALES.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+		LocalizedLabels labels = locales.get(locale);
+
+		if (labels == null)
+		{
+			labels = load(name, locale);
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (locales.size() < MAXIMUM_LOCALES)
+			{
+				locales.putIfAbsent(locale, labels);
+			}
+		}
+
+		return labels;
+	}
+
+	/**
+	 * Gets the escaped label for a key. A key that can't be found, or that the
+	 * text provider returns null for, is used as the label, as the Struts text
+	 * tag does.
+	 * @param key the key.
+	 * @return the escaped label.
+	 */
+	String get(String key)
+	{
+		String label = m_labels.get(key);
+
+		if (label == null)
+		{
+			if (m_provider == null)
+			{
+				return Escaper.escape(key);
+			}
+
+			String text = m_provider.getText(key);
+
+			label = Escaper.escape((text != null) ? text : key);
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (m_labels.size() < MAXIMUM_LABELS)
+			{
+				m_labels.putIfAbsent(key, label);
+			}
+		}
+
+		return label;
+	}
+
+	/**
+	 * Gets an identifier for where the labels come from, including the
+	 * locale, so anything built from them can be cached with it. It is only
+	 * built when asked for as a single option never needs it.
+	 * @return the identifier, or null if the labels aren't shared between
+	 * requests so nothing built from them should be cached.
+	 */
+	String getId()
+	{
+		return m_shared ? m_source + '\0' + m_locale : null;
+	}
+
+	/**
+	 * Finds a bundle in a locale and gets its labels in the locale the bundle
+	 * resolves to, loading and escaping them all the first time it is used in
+	 * that locale.
+	 * @param name the name of the bundle.
+	 * @param locale the locale.
+	 * @return the labels.
+	 * @throws JspTagException if the bundle couldn't be found.
+	 */
+	private static LocalizedLabels load(String name, Locale locale) throws JspTagException
+	{
+		ResourceBundle resources;
+
+		try
+		{
+			resources = ResourceBundle.getBundle(name, locale, Thread.currentThread().getContextClassLoader());
+		}
+		catch (MissingResourceException e)
+		{
+			throw new JspTagException("Unable to find the bundle: " + name, e);
+		}
+
+		// Every locale that resolves to the same bundle shares its labels, so they are bounded by the bundles
+		Locale resolved = resources.getLocale();
+		ConcurrentMap<Locale, Map<String, String>> bundles =
+			BUNDLES.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+		Map<String, String> labels = bundles.get(resolved);
+
+		if (labels == null)
+		{
+			labels = new HashMap<>();
+
+			for (Enumeration<String> keys = resources.getKeys(); keys.hasMoreElements();)
+			{
+				String key = keys.nextElement();
+
+				labels.put(key, Escaper.escape(String.valueOf(resources.getObject(key))));
+			}
+
+			Map<String, String> existing = bundles.putIfAbsent(resolved, labels);
+
+			if (existing != null)
+			{
+				labels = existing;
+			}
+		}
+
+		return new LocalizedLabels(labels, null, name, resolved, true);
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.tagext.PageData;
+import javax.servlet.jsp.tagext.TagLibraryValidator;
+import javax.servlet.jsp.tagext.ValidationMessage;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks the literal property names of the tags in a page against the
+ * accepted pattern when the page is translated, so an invalid name fails the
+ * build rather than the first request to render it. Names that pass are also
+ * prepared by the default {@link ValueResolver}s, so when pages are
+ * translated by the container the first render finds them already checked
+ * and parsed. That only holds in the JVM that translated the page, so
+ * precompiled pages rely on the {@link WarmUpListener} instead.
+ */
+public final class NameValidator extends TagLibraryValidator
+{
+	/** The namespace of the JSP attributes in the XML view of a page. */
+	private static final String JSP_NAMESPACE = "http://java.sun.com/JSP/Page";
+
+	/** The attributes holding property names. */
+	private static final String[] NAME_ATTRIBUTES = {"name", "path", "itemValue", "itemLabel"};
+
+	@Override
+	public ValidationMessage[] validate(String prefix, String uri, PageData page)
+	{
+		NameHandler handler = new NameHandler(uri);
+
+		try (InputStream in = page.getInputStream())
+		{
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.newSAXParser().parse(in, handler);
+		}
+		catch (IOException | ParserConfigurationException | SAXException e)
+		{
+			return new ValidationMessage[] {new ValidationMessage(null, "Unable to check property names: " + e)};
+		}
+
+		List<ValidationMessage> messages = handler.getMessages();
+
+		return messages.isEmpty() ? null : messages.toArray(new ValidationMessage[messages.size()]);
+	}
+
+	/**
+	 * Determines whether an attribute value in the XML view of a page is a
+	 * literal rather than an expression.
+	 * @param value the value.
+	 * @return true if it is a literal.
+	 */
+	private static boolean isLiteral(String value)
+	{
+		return !value.contains("${") && !value.contains("#{") && !value.startsWith("%=");
+	}
+
+	/**
+	 * Checks the names of the elements from the tag library as the page is
+	 * parsed.
+	 */
+	private static final class NameHandler extends DefaultHandler
+	{
+		private final String m_uri;
+
+		private final List<ValidationMessage> m_messages = new ArrayList<>();
+
+		/**
+		 * Creates a new handler.
+		 * @param uri the URI the tag library is used with in the page.
+		 */
+		NameHandler(String uri)
+		{
+			m_uri = uri;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+		{
+			if (!m_uri.equals(uri))
+			{
+				return;
+			}
+
+			for (String attribute : NAME_ATTRIBUTES)
+			{
+				String name = attributes.getValue("", attribute);
+
+				if ((name != null) && isLiteral(name))
+				{
+					check(name, attributes.getValue(JSP_NAMESPACE, "id"));
+				}
+			}
+		}
+
+		/**
+		 * Gets the messages for the invalid names.
+		 * @return the messages.
+		 */
+		List<ValidationMessage> getMessages()
+		{
+			return m_messages;
+		}
+
+		/**
+		 * Checks a name and prepares it with the default resolvers if it is
+		 * valid.
+		 * @param name the property name.
+		 * @param id the id of the element or null if the container didn't
+		 * give it one.
+		 */
+		private void check(String name, String id)
+		{
+			if (!ActionUtils.isAcceptedName(name))
+			{
+				m_messages.add(new ValidationMessage(id, "Invalid name for a property: " + name));
+
+				return;
+			}
+
+			try
+			{
+				for (ValueResolver<Object> resolver : ValueResolvers.getDefaults())
+				{
+					resolver.prepare(name);
+				}
+			}
+			catch (JspTagException e)
+			{
+				m_messages.add(new ValidationMessage(id, e.getMessage()));
+			}
+		}
+	}
+}
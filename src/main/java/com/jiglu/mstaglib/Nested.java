@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.tagext.BodyTagSupport;
+import javax.servlet.jsp.tagext.TryCatchFinally;
+
+/**
+ * Resolves an object from the Struts 2 action once, such as a row of a list,
+ * so that the tags inside it can name its properties relative to it. The tags
+ * still render and look up field errors with the full names.
+ */
+public final class Nested extends BodyTagSupport implements TryCatchFinally
+{
+	private String m_path;
+
+	private String m_previousPath;
+
+	private Object m_previousRoot;
+
+	private RenderContext m_context;
+
+	/** Serial version UID */
+	private static final long serialVersionUID = 4093165021950178372L;
+
+	@Override
+	public void doCatch(Throwable t) throws Throwable
+	{
+		throw t;
+	}
+
+	@Override
+	public void doFinally()
+	{
+		// Put back the enclosing nested tag's object even if the body failed
+		if (m_context != null)
+		{
+			m_context.setNested(m_previousPath, m_previousRoot);
+		}
+
+		m_context = null;
+		m_previousPath = null;
+		m_previousRoot = null;
+	}
+
+	@Override
+	public int doStartTag() throws JspException
+	{
+		// Validate we have what we need
+		if (m_path == null)
+		{
+			throw new JspTagException("No path attribute supplied");
+		}
+
+		RenderContext context = RenderContext.get(pageContext);
+
+		// Resolve the object relative to any enclosing nested tag before switching to it
+		Object root = context.getActionValue(m_path);
+
+		m_context = context;
+		m_previousPath = context.getPath();
+		m_previousRoot = context.getRoot();
+
+		context.setNested(context.getFullName(m_path), root);
+
+		return EVAL_BODY_INCLUDE;
+	}
+
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_path = null;
+		m_previousPath = null;
+		m_previousRoot = null;
+		m_context = null;
+	}
+
+	/**
+	 * Sets the path.
+	 * @param path the path.
+	 */
+	public void setPath(String path)
+	{
+		m_path = path;
+	}
+}
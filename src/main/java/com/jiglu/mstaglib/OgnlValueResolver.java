@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ognl.OgnlValueStack;
+
+/**
+ * Resolves values from the Struts OGNL value stack for pages rendered by a
+ * Struts action, and field errors from the action. Values are reused between
+ * tags until the value stack or the object at the top of it changes, for
+ * example when another action is executed or an object is pushed while the
+ * page is rendering.
+ */
+public final class OgnlValueResolver implements ValueResolver<OgnlValueResolver.State>
+{
+	@Override
+	public Locale getLocale(State state)
+	{
+		// The value stack context is the action context, which the dispatcher gives the locale chosen for the action
+		return ActionContext.of(state.m_valueStack.getContext()).getLocale();
+	}
+
+	@Override
+	public State getState(PageContext pageContext, State previous)
+	{
+		Object valueStack = pageContext.getAttribute("struts.valueStack", PageContext.REQUEST_SCOPE);
+
+		if (!(valueStack instanceof OgnlValueStack))
+		{
+			return null;
+		}
+
+		OgnlValueStack ognlValueStack = (OgnlValueStack)valueStack;
+		Object top = ognlValueStack.peek();
+		int depth = ognlValueStack.size();
+
+		if ((previous != null) && (previous.m_valueStack == valueStack) && (previous.m_top == top) &&
+			(previous.m_depth == depth))
+		{
+			return previous;
+		}
+
+		return new State(ognlValueStack, top, depth);
+	}
+
+	@Override
+	public Object getValue(State state, String name) throws JspTagException
+	{
+		return ActionUtils.getActionValue(state.m_valueStack, name);
+	}
+
+	@Override
+	public Object getValue(State state, Object bean, String name) throws JspTagException
+	{
+		return ActionUtils.getPropertyValue(state.m_valueStack, bean, name);
+	}
+
+	@Override
+	public boolean hasFieldError(State state, String name) throws JspTagException
+	{
+		// The field errors are copied once for all of the tags using the state
+		if (state.m_fieldErrors == null)
+		{
+			Map<String, List<String>> fieldErrors = ActionUtils.getFieldErrors(state.m_valueStack);
+
+			state.m_fieldErrors = ((fieldErrors == null) || fieldErrors.isEmpty())
+				? Collections.emptySet()
+				: Collections.unmodifiableSet(new HashSet<>(fieldErrors.keySet()));
+		}
+
+		return state.m_fieldErrors.contains(name);
+	}
+
+	@Override
+	public void prepare(String name) throws JspTagException
+	{
+		ExpressionCache.getInstance().getExpression(name);
+	}
+
+	/**
+	 * The value stack and the object at the top of it when values were
+	 * resolved.
+	 */
+	static final class State
+	{
+		private final OgnlValueStack m_valueStack;
+
+		private final Object m_top;
+
+		private final int m_depth;
+
+		private Set<String> m_fieldErrors;
+
+		/**
+		 * Creates a new state.
+		 * @param valueStack the value stack.
+		 * @param top the object at the top of the value stack.
+		 * @param depth the size of the value stack.
+		 */
+		State(OgnlValueStack valueStack, Object top, int depth)
+		{
+			m_valueStack = valueStack;
+			m_top = top;
+			m_depth = depth;
+		}
+	}
+}
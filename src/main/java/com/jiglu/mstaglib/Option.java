@@ -19,81 +19,40 @@
 
 package com.jiglu.mstaglib;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import javax.servlet.jsp.JspException;
-import javax.servlet.jsp.JspTagException;
 import javax.servlet.jsp.tagext.BodyTagSupport;
 import javax.servlet.jsp.tagext.DynamicAttributes;
 
-import com.opensymphony.xwork2.ognl.OgnlValueStack;
-
 /**
  * Creates an &lt;option&gt; HTML tag populated from a Struts 2 action.
  */
 public final class Option extends BodyTagSupport implements DynamicAttributes
 {
-	private String m_name;
-
 	private String m_value;
 
+	private String m_label;
+
+	private String m_key;
+
+	private String m_bundle;
+
 	private String m_disabled;
 
-	private final Map<String, Object> m_dynamicAttributes = new HashMap<>();
+	private final AttributeList m_dynamicAttributes = new AttributeList();
 
 	/** Serial version UID */
 	private static final long serialVersionUID = -3108771368170343834L;
 
-	@SuppressWarnings("resource")
 	@Override
 	public int doEndTag() throws JspException
 	{
-		// Get the value stack
-		OgnlValueStack valueStack = ActionUtils.getValueStack(pageContext);
-
-		// Build up the tags
-		StringBuilder output = new StringBuilder(128);
-
-		output.append("<option");
-
-		if (m_value != null)
-		{
-			output.append(" value=\"").append(ActionUtils.escapeEntities(m_value)).append('"');
-		}
-
-		String bodyText = (getBodyContent() != null) ? getBodyContent().getString() : "";
-
-		if (ActionUtils.isSelected(valueStack, m_name, m_value != null ? m_value : bodyText))
-		{
-			output.append(" selected=\"selected\"");
-		}
-
-		// Handle disabled attribute converting from boolean if needed
-		if ((m_disabled != null) && (m_disabled.equalsIgnoreCase("true") || m_disabled.equalsIgnoreCase("disabled")))
-		{
-			output.append(" disabled=\"disabled\"");
-		}
-
-		// Handle dynamic attributes
-		for (Entry<String, Object> entry : m_dynamicAttributes.entrySet())
-		{
-			output.append(' ').append(entry.getKey()).append("=\"").append(entry.getValue()).append('"');
-		}
-
-		output.append('>').append(bodyText).append("</option>");
-
-		// Write it out
-		try
-		{
-			pageContext.getOut().print(output);
-		}
-		catch (IOException e)
-		{
-			throw new JspTagException(e);
-		}
+		TagRenderer.option(pageContext, m_value, m_label, m_key, m_bundle, getBodyContent(), m_disabled,
+			m_dynamicAttributes);
+
+		// Clear the state for this use so the handler can be reused, including a body that won't be replaced if the next
+		// use has an empty body
+		bodyContent = null;
+		m_dynamicAttributes.clear();
 
 		return EVAL_PAGE;
 	}
@@ -101,17 +60,31 @@ public final class Option extends BodyTagSupport implements DynamicAttributes
 	@Override
 	public int doStartTag() throws JspException
 	{
-		// Validate we have what we need
-		Select parent = (Select)findAncestorWithClass(this, Select.class);
-
-		if (parent == null)
-		{
-			throw new JspTagException("Can only be used inside select tag");
-		}
+		// Being inside a select tag is checked when the option is rendered, and the body is only needed without a label
+		// or a key
+		return ((m_label != null) || (m_key != null)) ? SKIP_BODY : EVAL_BODY_BUFFERED;
+	}
 
-		m_name = parent.getName();
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_value = null;
+		m_label = null;
+		m_key = null;
+		m_bundle = null;
+		m_disabled = null;
+		m_dynamicAttributes.clear();
+	}
 
-		return EVAL_BODY_BUFFERED;
+	/**
+	 * Sets the bundle.
+	 * @param bundle the bundle.
+	 */
+	public void setBundle(String bundle)
+	{
+		m_bundle = bundle;
 	}
 
 	/**
@@ -129,6 +102,24 @@ public final class Option extends BodyTagSupport implements DynamicAttributes
 		m_dynamicAttributes.put(localName, value);
 	}
 
+	/**
+	 * Sets the key.
+	 * @param key the key.
+	 */
+	public void setKey(String key)
+	{
+		m_key = key;
+	}
+
+	/**
+	 * Sets the label.
+	 * @param label the label.
+	 */
+	public void setLabel(String label)
+	{
+		m_label = label;
+	}
+
 	/**
 	 * Sets the value.
 	 * @param value the value.
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.jsp.JspTagException;
+
+/**
+ * An immutable list of options with their markup already escaped, so that
+ * rendering them only needs to write out the fragments and mark which are
+ * selected. The same items can be rendered as checkboxes or radio buttons.
+ * Models for enum classes are always shared between requests and models for
+ * other items are shared when given a cache key, with a model for each
+ * locale when the labels are localized.
+ */
+final class OptionModel
+{
+	/** Models for enum classes keyed by the value and label properties. */
+	private static final ClassValue<ConcurrentMap<String, OptionModel>> ENUM_MODELS = new ClassValue<>()
+	{
+		@Override
+		protected ConcurrentMap<String, OptionModel> computeValue(Class<?> type)
+		{
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/** Models keyed by the cache key and the value and label properties. */
+	private static final ConcurrentMap<String, OptionModel> CACHED_MODELS = new ConcurrentHashMap<>();
+
+	/** The maximum number of models held for cache keys or for each enum class. */
+	private static final int MAXIMUM_MODELS = 256;
+
+	private final String[] m_values;
+
+	private final String[] m_starts;
+
+	private final String[] m_ends;
+
+	private final String[] m_escapedValues;
+
+	private final String[] m_escapedLabels;
+
+	/**
+	 * Creates a new model.
+	 * @param values the unescaped option values used to test the selection.
+	 * @param starts the start of each option tag up to the selected attribute.
+	 * @param ends the rest of each option tag from the end of the attributes.
+	 * @param escapedValues the escaped values.
+	 * @param escapedLabels the escaped labels.
+	 */
+	private OptionModel(String[] values, String[] starts, String[] ends, String[] escapedValues,
+		String[] escapedLabels)
+	{
+		m_values = values;
+		m_starts = starts;
+		m_ends = ends;
+		m_escapedValues = escapedValues;
+		m_escapedLabels = escapedLabels;
+	}
+
+	/**
+	 * Gets the model for a set of items, building it if it isn't cached.
+	 * @param context the render context used to read the item properties.
+	 * @param items a collection, array or map of items, or an enum class or
+	 * its name.
+	 * @param itemValue the property of each item to use as the value or null
+	 * to use the default.
+	 * @param itemLabel the property of each item to use as the label or null
+	 * to use the default.
+	 * @param cacheKey the key to share the model between requests under or
+	 * null if it shouldn't be shared.
+	 * @param localizedLabels the labels to look up each label in as a key or
+	 * null to use the labels as they are.
+	 * @param keyPrefix the prefix of each key or null if there isn't one.
+	 * @return the model.
+	 * @throws JspTagException if an error occurred.
+	 */
+	static OptionModel get(RenderContext context, Object items, String itemValue, String itemLabel,
+		String cacheKey, LocalizedLabels localizedLabels, String keyPrefix) throws JspTagException
+	{
+		if (items instanceof String)
+		{
+			try
+			{
+				items = Class.forName((String)items, true, Thread.currentThread().getContextClassLoader());
+			}
+			catch (ClassNotFoundException e)
+			{
+				throw new JspTagException("Unable to find the enum class: " + items, e);
+			}
+		}
+
+		String properties = itemValue + '\0' + itemLabel;
+
+		if (localizedLabels != null)
+		{
+			String id = localizedLabels.getId();
+
+			// Labels that aren't shared are only for this use, so neither is a model built from them
+			if (id == null)
+			{
+				return build(context, items, itemValue, itemLabel, localizedLabels, keyPrefix);
+			}
+
+			properties += '\0' + keyPrefix + '\0' + id;
+		}
+
+		ConcurrentMap<String, OptionModel> models;
+		String key;
+
+		if ((items instanceof Class) && ((Class<?>)items).isEnum())
+		{
+			models = ENUM_MODELS.get((Class<?>)items);
+			key = properties;
+		}
+		else if (cacheKey != null)
+		{
+			models = CACHED_MODELS;
+			key = cacheKey + '\0' + properties;
+		}
+		else
+		{
+			return build(context, items, itemValue, itemLabel, localizedLabels, keyPrefix);
+		}
+
+		OptionModel model = models.get(key);
+
+		if (model == null)
+		{
+			model = build(context, items, itemValue, itemLabel, localizedLabels, keyPrefix);
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (models.size() < MAXIMUM_MODELS)
+			{
+				OptionModel existing = models.putIfAbsent(key, model);
+
+				if (existing != null)
+				{
+					model = existing;
+				}
+			}
+		}
+
+		return model;
+	}
+
+	/**
+	 * Writes out the options.
+	 * @param out the writer.
+	 * @param selection the selection for the select the options are in.
+	 * @throws IOException if an error occurred writing.
+	 */
+	void render(Writer out, SelectionMatcher selection) throws IOException
+	{
+		for (int i = 0; i < m_values.length; i++)
+		{
+			out.write(m_starts[i]);
+
+			if (selection.matches(m_values[i]))
+			{
+				out.write(" selected=\"selected\"");
+			}
+
+			out.write(m_ends[i]);
+		}
+	}
+
+	/**
+	 * Writes out the items as inputs, each optionally wrapped in a label.
+	 * @param out the writer.
+	 * @param start the start of each input tag up to the value, which is
+	 * written next.
+	 * @param end the rest of each input tag following the checked attribute.
+	 * @param selection the selection the values are tested against.
+	 * @param labels true to wrap each input in a label.
+	 * @throws IOException if an error occurred writing.
+	 */
+	void renderInputs(Writer out, String start, String end, SelectionMatcher selection, boolean labels)
+		throws IOException
+	{
+		for (int i = 0; i < m_values.length; i++)
+		{
+			if (labels)
+			{
+				out.write("<label>");
+			}
+
+			out.write(start);
+			out.write(m_escapedValues[i]);
+			out.write('"');
+
+			if (selection.matches(m_values[i]))
+			{
+				out.write(" checked=\"checked\"");
+			}
+
+			out.write(end);
+
+			if (labels)
+			{
+				out.write(' ');
+				out.write(m_escapedLabels[i]);
+				out.write("</label>");
+			}
+		}
+	}
+
+	/**
+	 * Builds a model.
+	 * @param context the render context.
+	 * @param items the items.
+	 * @param itemValue the value property or null.
+	 * @param itemLabel the label property or null.
+	 * @param localizedLabels the labels to look up each label in or null.
+	 * @param keyPrefix the prefix of each key or null.
+	 * @return the model.
+	 * @throws JspTagException if an error occurred.
+	 */
+	private static OptionModel build(RenderContext context, Object items, String itemValue, String itemLabel,
+		LocalizedLabels localizedLabels, String keyPrefix) throws JspTagException
+	{
+		List<String> values = new ArrayList<>();
+		List<String> labels = new ArrayList<>();
+
+		if (items instanceof Class)
+		{
+			Class<?> type = (Class<?>)items;
+
+			if (!type.isEnum())
+			{
+				throw new JspTagException("Not an enum class: " + type.getName());
+			}
+
+			for (Object item : type.getEnumConstants())
+			{
+				Enum<?> constant = (Enum<?>)item;
+
+				values.add((itemValue != null) ? getString(context, item, itemValue) : constant.name());
+				labels.add((itemLabel != null) ? getString(context, item, itemLabel) : constant.toString());
+			}
+		}
+		else if (items instanceof Map)
+		{
+			// Map keys are the values and the map values are the labels
+			for (Entry<?, ?> entry : ((Map<?, ?>)items).entrySet())
+			{
+				Object item = entry.getValue();
+
+				values.add((itemValue != null) ? getString(context, item, itemValue) : toValue(entry.getKey()));
+				labels.add((itemLabel != null) ? getString(context, item, itemLabel) : toString(item));
+			}
+		}
+		else if (items instanceof Iterable)
+		{
+			for (Object item : (Iterable<?>)items)
+			{
+				add(context, item, itemValue, itemLabel, values, labels);
+			}
+		}
+		else if ((items != null) && items.getClass().isArray())
+		{
+			for (int i = 0, l = Array.getLength(items); i < l; i++)
+			{
+				add(context, Array.get(items, i), itemValue, itemLabel, values, labels);
+			}
+		}
+		else if (items != null)
+		{
+			throw new JspTagException("Unsupported type of items: " + items.getClass().getName());
+		}
+
+		String[] starts = new String[values.size()];
+		String[] ends = new String[values.size()];
+		String[] escapedValues = new String[values.size()];
+		String[] escapedLabels = new String[values.size()];
+
+		for (int i = 0; i < starts.length; i++)
+		{
+			escapedValues[i] = ActionUtils.escapeEntities(values.get(i));
+			escapedLabels[i] = (localizedLabels != null) ?
+				localizedLabels.get((keyPrefix != null) ? keyPrefix + labels.get(i) : labels.get(i)) :
+				ActionUtils.escapeEntities(labels.get(i));
+			starts[i] = "<option value=\"" + escapedValues[i] + '"';
+			ends[i] = '>' + escapedLabels[i] + "</option>";
+		}
+
+		return new OptionModel(values.toArray(new String[values.size()]), starts, ends, escapedValues, escapedLabels);
+	}
+
+	/**
+	 * Adds the value and label of an item from a collection or array.
+	 * @param context the render context.
+	 * @param item the item.
+	 * @param itemValue the value property or null to use the item itself, or
+	 * the constant name of an enum.
+	 * @param itemLabel the label property or null to use the item itself.
+	 * @param values the values to add to.
+	 * @param labels the labels to add to.
+	 * @throws JspTagException if an error occurred.
+	 */
+	private static void add(RenderContext context, Object item, String itemValue, String itemLabel,
+		List<String> values, List<String> labels) throws JspTagException
+	{
+		values.add(((itemValue != null) && (item != null)) ? getString(context, item, itemValue) : toValue(item));
+		labels.add(((itemLabel != null) && (item != null)) ? getString(context, item, itemLabel) : toString(item));
+	}
+
+	/**
+	 * Gets a property of an item as a string.
+	 * @param context the render context.
+	 * @param item the item.
+	 * @param property the property name.
+	 * @return the value or an empty string if null.
+	 * @throws JspTagException if an error occurred.
+	 */
+	private static String getString(RenderContext context, Object item, String property) throws JspTagException
+	{
+		return toString(context.getPropertyValue(item, property));
+	}
+
+	/**
+	 * Converts a value to a string.
+	 * @param value the value.
+	 * @return the string or an empty string if null.
+	 */
+	private static String toString(Object value)
+	{
+		return (value != null) ? value.toString() : "";
+	}
+
+	/**
+	 * Converts an item used as a value to a string. Enum constants are
+	 * converted to their names, which is what the selection is matched
+	 * against and what converts back to the constant when submitted.
+	 * @param value the value.
+	 * @return the string or an empty string if null.
+	 */
+	private static String toValue(Object value)
+	{
+		return (value instanceof Enum) ? ((Enum<?>)value).name() : toString(value);
+	}
+}
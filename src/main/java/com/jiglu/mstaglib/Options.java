@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.tagext.BodyTagSupport;
+
+/**
+ * Creates &lt;option&gt; HTML tags for a list of items inside a select tag.
+ */
+public final class Options extends BodyTagSupport
+{
+	private Object m_items;
+
+	private String m_itemValue;
+
+	private String m_itemLabel;
+
+	private String m_cacheKey;
+
+	private String m_keyPrefix;
+
+	private String m_bundle;
+
+	/** Serial version UID */
+	private static final long serialVersionUID = -5226010413964853702L;
+
+	@Override
+	public int doEndTag() throws JspException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+
+		// Validate we have what we need
+		RenderContext context = RenderContext.get(pageContext);
+		SelectionMatcher selection = context.getSelection();
+
+		if (selection == null)
+		{
+			throw new JspTagException("Can only be used inside select tag");
+		}
+
+		// Labels are looked up as keys when there is a key prefix or a bundle
+		LocalizedLabels labels = ((m_keyPrefix != null) || (m_bundle != null)) ?
+			LocalizedLabels.get(pageContext, context, m_bundle) : null;
+		OptionModel model = OptionModel.get(context, m_items, m_itemValue, m_itemLabel, m_cacheKey, labels, m_keyPrefix);
+
+		// Write them out
+		try
+		{
+			JspWriter out = pageContext.getOut();
+
+			model.render(out, selection);
+
+			metrics.recordRender(TagMetrics.OPTIONS, null, pageContext, start);
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+
+		return EVAL_PAGE;
+	}
+
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_items = null;
+		m_itemValue = null;
+		m_itemLabel = null;
+		m_cacheKey = null;
+		m_keyPrefix = null;
+		m_bundle = null;
+	}
+
+	/**
+	 * Sets the bundle.
+	 * @param bundle the bundle.
+	 */
+	public void setBundle(String bundle)
+	{
+		m_bundle = bundle;
+	}
+
+	/**
+	 * Sets the cache key.
+	 * @param cacheKey the cache key.
+	 */
+	public void setCacheKey(String cacheKey)
+	{
+		m_cacheKey = cacheKey;
+	}
+
+	/**
+	 * Sets the items.
+	 * @param items the items.
+	 */
+	public void setItems(Object items)
+	{
+		m_items = items;
+	}
+
+	/**
+	 * Sets the item label.
+	 * @param itemLabel the item label.
+	 */
+	public void setItemLabel(String itemLabel)
+	{
+		m_itemLabel = itemLabel;
+	}
+
+	/**
+	 * Sets the item value.
+	 * @param itemValue the item value.
+	 */
+	public void setItemValue(String itemValue)
+	{
+		m_itemValue = itemValue;
+	}
+
+	/**
+	 * Sets the key prefix.
+	 * @param keyPrefix the key prefix.
+	 */
+	public void setKeyPrefix(String keyPrefix)
+	{
+		m_keyPrefix = keyPrefix;
+	}
+}
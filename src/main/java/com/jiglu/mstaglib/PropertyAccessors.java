@@ -0,0 +1,466 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads simple property paths such as <code>field</code>,
+ * <code>bean.field</code>, <code>list[3]</code> and <code>map['key']</code>
+ * directly using method handles instead of going through OGNL.
+ * <p>
+ * A path is compiled the first time it is read from an object of a given
+ * class, recording the class of each object along the path, and the compiled
+ * path is cached for that class along with the value read while compiling it,
+ * so no getter is called twice. Whenever a path can't be compiled or an
+ * object along it isn't of the recorded class, {@link #UNRESOLVED} is returned
+ * so the caller can fall back to OGNL. A path through a null object is left
+ * to OGNL from then on, as is every new name once the cache for a class is
+ * full, while a path whose getter threw is tried again next time. To keep within what OGNL would allow,
+ * getters are only called on application classes and not on classes from the
+ * JDK, Struts, OGNL or other Apache packages.
+ */
+final class PropertyAccessors
+{
+	/** Returned when a path can't be read directly. */
+	static final Object UNRESOLVED = new Object();
+
+	/** The maximum number of paths held for each class. */
+	private static final int MAXIMUM_PATHS = Integer.getInteger("com.jiglu.mstaglib.accessorCacheSize", 2048);
+
+	/** Packages whose classes getters are never called on. */
+	private static final String[] EXCLUDED_PACKAGES = {
+		"java.", "javax.", "jdk.", "sun.", "com.sun.", "ognl.", "com.opensymphony.", "org.apache."
+	};
+
+	/** Cached paths for each class, held so that they don't prevent the class being unloaded. */
+	private static final ClassValue<ConcurrentMap<String, Path>> PATHS = new ClassValue<>()
+	{
+		@Override
+		protected ConcurrentMap<String, Path> computeValue(Class<?> type)
+		{
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/** Marker for a name that can never be read directly from a class. */
+	private static final Path UNSUPPORTED = new Path(new Step[0], true);
+
+	private static final MethodHandle LIST_GET;
+
+	private static final MethodHandle MAP_GET;
+
+	static
+	{
+		try
+		{
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+			LIST_GET = lookup.findVirtual(List.class, "get", MethodType.methodType(Object.class, int.class));
+			MAP_GET = lookup.findVirtual(Map.class, "get", MethodType.methodType(Object.class, Object.class));
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** Private default constructor to prevent external instantiation. */
+	private PropertyAccessors()
+	{
+	}
+
+	/**
+	 * Reads a property path from an object. The name must already have been
+	 * checked against the accepted pattern.
+	 * @param root the object to read from.
+	 * @param name the property path.
+	 * @return the value, or {@link #UNRESOLVED} if the path must be read using
+	 * OGNL instead. Null is only returned where OGNL would also have found null.
+	 */
+	static Object getValue(Object root, String name)
+	{
+		if (root == null)
+		{
+			return UNRESOLVED;
+		}
+
+		ConcurrentMap<String, Path> paths = PATHS.get(root.getClass());
+		Path path = paths.get(name);
+
+		if (path != null)
+		{
+			return path.getValue(root);
+		}
+
+		// Compiling a path only to throw it away would cost more than leaving it to OGNL
+		if (paths.size() >= MAXIMUM_PATHS)
+		{
+			return UNRESOLVED;
+		}
+
+		return compile(root, name, paths);
+	}
+
+	/**
+	 * Compiles a path by walking it from an object, caching it unless a getter
+	 * threw, and returns the value read along the way.
+	 * @param root the object to read from.
+	 * @param name the property path.
+	 * @param paths the cached paths for the class of the object.
+	 * @return the value, or {@link #UNRESOLVED} if the path must be read using
+	 * OGNL instead.
+	 */
+	private static Object compile(Object root, String name, ConcurrentMap<String, Path> paths)
+	{
+		List<Step> steps = new ArrayList<>();
+		boolean keyed = false;
+		Object value = root;
+		int i = 0, l = name.length();
+
+		while (i < l)
+		{
+			// The classes beyond a null object aren't known, and walking it again each time would call the getters twice
+			if (value == null)
+			{
+				paths.putIfAbsent(name, UNSUPPORTED);
+
+				return UNRESOLVED;
+			}
+
+			Step step;
+			char c = name.charAt(i);
+
+			if ((i == 0) || (c == '.'))
+			{
+				int start = (i == 0) ? 0 : i + 1;
+
+				i = start;
+
+				while ((i < l) && isWordChar(name.charAt(i)))
+				{
+					i++;
+				}
+
+				step = createPropertyStep(value, name.substring(start, i));
+			}
+			else if ((c == '[') && (i + 1 < l) && (name.charAt(i + 1) == '\''))
+			{
+				int end = name.indexOf("']", i + 2);
+
+				step = createKeyStep(value, name.substring(i + 2, end));
+				keyed = true;
+				i = end + 2;
+			}
+			else if (c == '[')
+			{
+				int end = name.indexOf(']', i + 1);
+
+				step = createIndexStep(value, name.substring(i + 1, end));
+				i = end + 1;
+			}
+			else
+			{
+				// The bracketed forms are left to OGNL
+				step = null;
+			}
+
+			if (step == null)
+			{
+				paths.putIfAbsent(name, UNSUPPORTED);
+
+				return UNRESOLVED;
+			}
+
+			try
+			{
+				value = step.m_handle.invokeExact(value);
+			}
+			catch (Error e)
+			{
+				throw e;
+			}
+			catch (Throwable t)
+			{
+				// The getter may only have failed this time, so let OGNL report it and compile the path again later
+				return UNRESOLVED;
+			}
+
+			steps.add(step);
+		}
+
+		paths.putIfAbsent(name, new Path(steps.toArray(new Step[steps.size()]), keyed));
+
+		return ((value == null) && keyed) ? UNRESOLVED : value;
+	}
+
+	/**
+	 * Creates a step reading an element of a list or array.
+	 * @param value the list or array.
+	 * @param index the index.
+	 * @return the step or null if not supported.
+	 */
+	private static Step createIndexStep(Object value, String index)
+	{
+		int position;
+
+		try
+		{
+			position = Integer.parseInt(index);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+
+		if (value instanceof List)
+		{
+			return new Step(List.class, false, MethodHandles.insertArguments(LIST_GET, 1, position));
+		}
+
+		if (value.getClass().isArray())
+		{
+			MethodHandle getter = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(value.getClass()), 1,
+				position);
+
+			return new Step(value.getClass(), true, getter);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Creates a step reading a value from a map by key.
+	 * @param value the map.
+	 * @param key the key.
+	 * @return the step or null if not supported.
+	 */
+	private static Step createKeyStep(Object value, String key)
+	{
+		return (value instanceof Map) ? new Step(Map.class, false, MethodHandles.insertArguments(MAP_GET, 1, key)) : null;
+	}
+
+	/**
+	 * Creates a step calling the getter for a property.
+	 * @param value the bean.
+	 * @param property the property name.
+	 * @return the step or null if not supported.
+	 */
+	private static Step createPropertyStep(Object value, String property)
+	{
+		Class<?> type = value.getClass();
+
+		// Maps have their own property semantics in OGNL
+		if (property.isEmpty() || (value instanceof Map) || isExcluded(type))
+		{
+			return null;
+		}
+
+		String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+		Method getter = findGetter(type, "get" + suffix);
+
+		if (getter == null)
+		{
+			getter = findGetter(type, "is" + suffix);
+
+			if ((getter != null) && (getter.getReturnType() != boolean.class) && (getter.getReturnType() != Boolean.class))
+			{
+				getter = null;
+			}
+		}
+
+		if ((getter == null) || isExcluded(getter.getDeclaringClass()))
+		{
+			return null;
+		}
+
+		try
+		{
+			return new Step(type, true, MethodHandles.publicLookup().unreflect(getter));
+		}
+		catch (IllegalAccessException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Finds a public no argument instance method with a return value.
+	 * @param type the class.
+	 * @param name the method name.
+	 * @return the method or null if there isn't one.
+	 */
+	private static Method findGetter(Class<?> type, String name)
+	{
+		try
+		{
+			Method method = type.getMethod(name);
+
+			if ((method.getReturnType() == void.class) || Modifier.isStatic(method.getModifiers())
+				|| !Modifier.isPublic(method.getDeclaringClass().getModifiers()))
+			{
+				return null;
+			}
+
+			return method;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Determines whether getters must not be called on a class.
+	 * @param type the class.
+	 * @return true if excluded.
+	 */
+	private static boolean isExcluded(Class<?> type)
+	{
+		String name = type.getName();
+
+		for (String excluded : EXCLUDED_PACKAGES)
+		{
+			if (name.startsWith(excluded))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Determines whether a character can be part of a property name.
+	 * @param c the character.
+	 * @return true if a word character.
+	 */
+	private static boolean isWordChar(char c)
+	{
+		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '_');
+	}
+
+	/**
+	 * A compiled property path.
+	 */
+	private static final class Path
+	{
+		private final Step[] m_steps;
+
+		private final boolean m_keyed;
+
+		/**
+		 * Creates a new path.
+		 * @param steps the steps.
+		 * @param keyed whether any step reads from a map, in which case a
+		 * null value is left for OGNL to check as it may convert the key.
+		 */
+		Path(Step[] steps, boolean keyed)
+		{
+			m_steps = steps;
+			m_keyed = keyed;
+		}
+
+		/**
+		 * Reads the path from an object.
+		 * @param root the object.
+		 * @return the value or {@link PropertyAccessors#UNRESOLVED}.
+		 */
+		Object getValue(Object root)
+		{
+			if (this == UNSUPPORTED)
+			{
+				return UNRESOLVED;
+			}
+
+			Object value = root;
+
+			for (Step step : m_steps)
+			{
+				if ((value == null) || !step.accepts(value))
+				{
+					return UNRESOLVED;
+				}
+
+				try
+				{
+					value = step.m_handle.invokeExact(value);
+				}
+				catch (Error e)
+				{
+					throw e;
+				}
+				catch (Throwable t)
+				{
+					// Let OGNL report the failure in its own way
+					return UNRESOLVED;
+				}
+			}
+
+			return ((value == null) && m_keyed) ? UNRESOLVED : value;
+		}
+	}
+
+	/**
+	 * A single step along a path.
+	 */
+	private static final class Step
+	{
+		private final Class<?> m_type;
+
+		private final boolean m_exact;
+
+		private final MethodHandle m_handle;
+
+		/**
+		 * Creates a new step.
+		 * @param type the class of object the step reads from.
+		 * @param exact whether the object must be exactly that class or can
+		 * be a subclass.
+		 * @param handle the method handle reading the value.
+		 */
+		Step(Class<?> type, boolean exact, MethodHandle handle)
+		{
+			m_type = type;
+			m_exact = exact;
+			m_handle = handle.asType(MethodType.methodType(Object.class, Object.class));
+		}
+
+		/**
+		 * Determines whether the step can read from an object.
+		 * @param value the object.
+		 * @return true if the object is of the expected class.
+		 */
+		boolean accepts(Object value)
+		{
+			return m_exact ? (value.getClass() == m_type) : m_type.isInstance(value);
+		}
+	}
+}
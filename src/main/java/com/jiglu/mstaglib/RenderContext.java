@@ -0,0 +1,307 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletRequest;
+
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+/**
+ * Per-request state shared by all of the tags rendered for a request. The
+ * {@link ValueResolver} for the page and the property values it resolved are
+ * looked up once and reused by later tags.
+ * <p>
+ * The resolved values are tied to the state returned by the resolver, so they
+ * are discarded whenever it changes, which for the Struts value stack is when
+ * another action is executed or an object is pushed while the page is
+ * rendering. The selection for the select tag being rendered and the object a
+ * nested tag resolved are kept regardless, as the tags inside them can push
+ * objects of their own.
+ * <p>
+ * Nothing else is watched, so a property changed between two tags without
+ * changing that state, for example by a scriptlet or another tag setting a
+ * property of the action, isn't seen by a later tag bound to the same name in
+ * the request. Pushing an object, or starting or ending a nested tag, makes
+ * the following tags resolve their values again.
+ */
+final class RenderContext
+{
+	/** Request attribute the context is stored under. */
+	private static final String ATTRIBUTE = RenderContext.class.getName();
+
+	private List<ValueResolver<Object>> m_resolvers;
+
+	private ValueResolver<Object> m_resolver;
+
+	private Object m_state;
+
+	private SelectionMatcher m_selection;
+
+	private String m_path;
+
+	private Object m_root;
+
+	private final Map<String, Object> m_values = new HashMap<>();
+
+	/** Private constructor as instances are only created by {@link #get(PageContext)}. */
+	private RenderContext()
+	{
+	}
+
+	/**
+	 * Gets the render context for the current request, creating it if needed.
+	 * @param pageContext the page context.
+	 * @return the render context.
+	 * @throws JspTagException if an error occurred.
+	 */
+	static RenderContext get(PageContext pageContext) throws JspTagException
+	{
+		RenderContext context = (RenderContext)pageContext.getAttribute(ATTRIBUTE, PageContext.REQUEST_SCOPE);
+
+		if (context == null)
+		{
+			context = new RenderContext();
+
+			pageContext.setAttribute(ATTRIBUTE, context, PageContext.REQUEST_SCOPE);
+		}
+
+		context.validate(pageContext);
+
+		return context;
+	}
+
+	/**
+	 * Clears the selection for the request if it has a render context, even
+	 * if the select tag failed, so that options rendered later in the request
+	 * aren't matched against it.
+	 * @param pageContext the page context.
+	 */
+	static void clearSelection(PageContext pageContext)
+	{
+		RenderContext context = (RenderContext)pageContext.getAttribute(ATTRIBUTE, PageContext.REQUEST_SCOPE);
+
+		if (context != null)
+		{
+			context.m_selection = null;
+		}
+	}
+
+	/**
+	 * Gets the value of a specified property from the action bean, or from the
+	 * object resolved by the enclosing nested tag, using the previously
+	 * resolved value if there is one, even if the property has since been
+	 * changed without changing the resolver's state. A reader is never kept,
+	 * as it can only be read once, so each tag asks the resolver for it again.
+	 * @param name the name of the property to retrieve.
+	 * @return the value from the action bean matching the name.
+	 * @throws JspTagException if an error occurred.
+	 */
+	Object getActionValue(String name) throws JspTagException
+	{
+		Object value = m_values.get(name);
+
+		if ((value == null) && !m_values.containsKey(name))
+		{
+			if (m_path == null)
+			{
+				value = m_resolver.getValue(m_state, name);
+			}
+			else if (m_root != null)
+			{
+				value = m_resolver.getValue(m_state, m_root, name);
+			}
+
+			if (!(value instanceof Reader))
+			{
+				m_values.put(name, value);
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Gets the value of a specified property from the action bean as a string.
+	 * If the value is null then an empty string is returned.
+	 * @param name the name of the property to retrieve.
+	 * @return the value from the action bean matching the name.
+	 * @throws JspTagException if an error occurred.
+	 */
+	String getActionValueString(String name) throws JspTagException
+	{
+		Object value = getActionValue(name);
+
+		return (value != null) ? value.toString() : "";
+	}
+
+	/**
+	 * Gets the full name of a property, including the path of the enclosing
+	 * nested tag if there is one.
+	 * @param name the name of the property relative to the nested tag.
+	 * @return the full name.
+	 */
+	String getFullName(String name)
+	{
+		if (m_path == null)
+		{
+			return name;
+		}
+
+		return m_path + '.' + name;
+	}
+
+	/**
+	 * Gets the locale to format values for, which is the locale from the
+	 * resolver if it has one, such as the Struts action's locale, and otherwise
+	 * the locale of the request.
+	 * @param pageContext the page context.
+	 * @return the locale.
+	 */
+	Locale getLocale(PageContext pageContext)
+	{
+		Locale locale = m_resolver.getLocale(m_state);
+
+		if (locale == null)
+		{
+			ServletRequest request = pageContext.getRequest();
+
+			locale = (request != null) ? request.getLocale() : Locale.getDefault();
+		}
+
+		return locale;
+	}
+
+	/**
+	 * Gets the path of the enclosing nested tag.
+	 * @return the full path or null if not inside a nested tag.
+	 */
+	String getPath()
+	{
+		return m_path;
+	}
+
+	/**
+	 * Gets the object resolved by the enclosing nested tag.
+	 * @return the object, which is null if the path resolved to null or if not
+	 * inside a nested tag.
+	 */
+	Object getRoot()
+	{
+		return m_root;
+	}
+
+	/**
+	 * Gets the value of a property of a bean, such as an item of an options
+	 * tag. The value isn't reused by later tags.
+	 * @param bean the bean.
+	 * @param name the name of the property relative to the bean.
+	 * @return the value.
+	 * @throws JspTagException if an error occurred.
+	 */
+	Object getPropertyValue(Object bean, String name) throws JspTagException
+	{
+		return m_resolver.getValue(m_state, bean, name);
+	}
+
+	/**
+	 * Gets the selection for the select tag being rendered.
+	 * @return the selection or null if not inside a select tag.
+	 */
+	SelectionMatcher getSelection()
+	{
+		return m_selection;
+	}
+
+	/**
+	 * Determines whether there is a field error for a property.
+	 * @param name the name of the property.
+	 * @return true if there is a field error.
+	 * @throws JspTagException if an error occurred.
+	 */
+	boolean hasFieldError(String name) throws JspTagException
+	{
+		return m_resolver.hasFieldError(m_state, name);
+	}
+
+	/**
+	 * Sets the path and object that properties are resolved against, for a
+	 * nested tag starting or ending. The values already resolved are discarded
+	 * as they were relative to the previous object.
+	 * @param path the full path or null if not inside a nested tag.
+	 * @param root the object the path resolved to.
+	 */
+	void setNested(String path, Object root)
+	{
+		m_path = path;
+		m_root = root;
+		m_values.clear();
+	}
+
+	/**
+	 * Sets the selection for the select tag being rendered.
+	 * @param selection the selection or null when the select tag ends.
+	 */
+	void setSelection(SelectionMatcher selection)
+	{
+		m_selection = selection;
+	}
+
+	/**
+	 * Finds the resolver for the page and discards the resolved values if its
+	 * state has changed since they were resolved.
+	 * @param pageContext the page context.
+	 * @throws JspTagException if no resolver can resolve values for the page.
+	 */
+	private void validate(PageContext pageContext) throws JspTagException
+	{
+		if (m_resolvers == null)
+		{
+			m_resolvers = ValueResolvers.get(pageContext);
+		}
+
+		for (ValueResolver<Object> resolver : m_resolvers)
+		{
+			// Only the resolver the state came from can decide whether it's still current
+			Object state = resolver.getState(pageContext, (resolver == m_resolver) ? m_state : null);
+
+			if (state != null)
+			{
+				if ((resolver != m_resolver) || (state != m_state))
+				{
+					m_resolver = resolver;
+					m_state = state;
+					m_values.clear();
+				}
+
+				return;
+			}
+		}
+
+		throw new JspTagException("None of the value resolvers can resolve values for the page, "
+			+ "as the request attribute struts.valueStack was not found");
+	}
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalField;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.jsp.JspTagException;
+
+/**
+ * The parts of a form element tag that only depend on its static attributes:
+ * the element and input type and whether the required and disabled
+ * attributes are set, along with the format a date or time input needs its
+ * value in and whether values can be formatted for the user's locale. A plan
+ * is built once for each combination of attribute values and shared between
+ * requests and pooled handlers, so a render only has to fill in the name,
+ * value, checked state and class around the pre-built segments.
+ * <p>
+ * Up to 2048 plans are held, which can be changed with the
+ * <code>com.jiglu.mstaglib.renderPlanCacheSize</code> system property. Once
+ * the cache is full a plan is built for each use instead.
+ */
+final class RenderPlan
+{
+	/** An input with its value taken from the value attribute or the property. */
+	static final int VALUE = 0;
+
+	/** A checkbox or radio button, which is checked by testing its value. */
+	static final int CHECKABLE = 1;
+
+	/** A file input, which never has a value. */
+	static final int FILE = 2;
+
+	/** A select or textarea element. */
+	static final int ELEMENT = 3;
+
+	/** The maximum number of plans held. */
+	private static final int MAXIMUM_PLANS = Integer.getInteger("com.jiglu.mstaglib.renderPlanCacheSize", 2048);
+
+	/** The plans for each combination of attribute values. */
+	private static final ConcurrentMap<Key, RenderPlan> PLANS = new ConcurrentHashMap<>();
+
+	/** The patterns for the values of the date and time input types, as HTML defines them. */
+	private static final Map<String, String> FORMATS = new HashMap<>();
+
+	/** The fields a value needs to be formatted for each date and time input type. */
+	private static final Map<String, TemporalField[]> FIELDS = new HashMap<>();
+
+	static
+	{
+		TemporalField[] date = {ChronoField.YEAR, ChronoField.MONTH_OF_YEAR, ChronoField.DAY_OF_MONTH};
+		TemporalField[] time = {ChronoField.HOUR_OF_DAY, ChronoField.MINUTE_OF_HOUR, ChronoField.SECOND_OF_MINUTE};
+
+		FORMATS.put("date", "uuuu-MM-dd");
+		FIELDS.put("date", date);
+		FORMATS.put("datetime-local", "uuuu-MM-dd'T'HH:mm:ss");
+		FIELDS.put("datetime-local", new TemporalField[] {ChronoField.YEAR, ChronoField.MONTH_OF_YEAR,
+			ChronoField.DAY_OF_MONTH, ChronoField.HOUR_OF_DAY, ChronoField.MINUTE_OF_HOUR,
+			ChronoField.SECOND_OF_MINUTE});
+		FORMATS.put("month", "uuuu-MM");
+		FIELDS.put("month", new TemporalField[] {ChronoField.YEAR, ChronoField.MONTH_OF_YEAR});
+		FORMATS.put("time", "HH:mm:ss");
+		FIELDS.put("time", time);
+	}
+
+	private final Key m_key;
+
+	private final int m_kind;
+
+	private final String m_start;
+
+	private final String m_flags;
+
+	private final String m_format;
+
+	private final TemporalField[] m_fields;
+
+	private final boolean m_localized;
+
+	/**
+	 * Creates a new plan.
+	 * @param key the element, type and attribute values.
+	 */
+	private RenderPlan(Key key)
+	{
+		m_key = key;
+
+		if (key.m_type == null)
+		{
+			m_kind = ELEMENT;
+			m_start = "<" + key.m_element + " name=\"";
+			m_format = null;
+			m_fields = null;
+			m_localized = true;
+		}
+		else
+		{
+			// HTML input types aren't case sensitive but the type is written as it was given
+			String type = key.m_type.toLowerCase(Locale.ROOT);
+
+			if (type.equals("checkbox") || type.equals("radio"))
+			{
+				m_kind = CHECKABLE;
+			}
+			else if (type.equals("file"))
+			{
+				m_kind = FILE;
+			}
+			else
+			{
+				m_kind = VALUE;
+			}
+
+			m_start = "<" + key.m_element + " type=\"" + Escaper.escape(key.m_type) + "\" name=\"";
+			m_format = FORMATS.get(type);
+			m_fields = FIELDS.get(type);
+
+			// HTML defines the value of date, time and number inputs so they can't follow the locale
+			m_localized = (m_format == null) && !type.equals("number") && !type.equals("range");
+		}
+
+		StringBuilder flags = new StringBuilder();
+
+		if (TagRenderer.isSet(key.m_required, "required"))
+		{
+			flags.append(" required=\"required\"");
+		}
+
+		if (TagRenderer.isSet(key.m_disabled, "disabled"))
+		{
+			flags.append(" disabled=\"disabled\"");
+		}
+
+		m_flags = flags.toString();
+	}
+
+	/**
+	 * Gets the pattern HTML requires the value of the input type to be
+	 * formatted with.
+	 * @return the pattern or null if the value isn't a date or time.
+	 */
+	String getFormat()
+	{
+		return m_format;
+	}
+
+	/**
+	 * Gets the fields a date or time value needs to be formatted with the
+	 * pattern from {@link #getFormat()}.
+	 * @return the fields or null if the value isn't a date or time.
+	 */
+	TemporalField[] getFormatFields()
+	{
+		return m_fields;
+	}
+
+	/**
+	 * Gets the kind of element.
+	 * @return {@link #VALUE}, {@link #CHECKABLE}, {@link #FILE} or
+	 * {@link #ELEMENT}.
+	 */
+	int getKind()
+	{
+		return m_kind;
+	}
+
+	/**
+	 * Gets the input type.
+	 * @return the input type or null if it isn't an input.
+	 */
+	String getType()
+	{
+		return m_key.m_type;
+	}
+
+	/**
+	 * Gets the plan for an input tag.
+	 * @param previous the plan used last time by the tag handler or null.
+	 * @param type the type.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @return the plan.
+	 * @throws JspTagException if there is no type.
+	 */
+	static RenderPlan input(RenderPlan previous, String type, String disabled, String required)
+		throws JspTagException
+	{
+		if (type == null)
+		{
+			throw new JspTagException("No type attribute supplied");
+		}
+
+		return get(previous, "input", type, disabled, required);
+	}
+
+	/**
+	 * Determines whether values are formatted for the user's locale, which
+	 * they aren't for the input types whose value HTML defines.
+	 * @return true if values are formatted for the user's locale.
+	 */
+	boolean isLocalized()
+	{
+		return m_localized;
+	}
+
+	/**
+	 * Gets the plan for a select tag.
+	 * @param previous the plan used last time by the tag handler or null.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @return the plan.
+	 */
+	static RenderPlan select(RenderPlan previous, String disabled, String required)
+	{
+		return get(previous, "select", null, disabled, required);
+	}
+
+	/**
+	 * Gets the plan for a textarea tag.
+	 * @param previous the plan used last time by the tag handler or null.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @return the plan.
+	 */
+	static RenderPlan textarea(RenderPlan previous, String disabled, String required)
+	{
+		return get(previous, "textarea", null, disabled, required);
+	}
+
+	/**
+	 * Writes out the required and disabled attributes that are set.
+	 * @param out the writer.
+	 * @throws IOException if an error occurred writing.
+	 */
+	void writeFlags(Writer out) throws IOException
+	{
+		if (!m_flags.isEmpty())
+		{
+			out.write(m_flags);
+		}
+	}
+
+	/**
+	 * Writes out the start of the element up to the opening quote of the name
+	 * attribute, including the type of an input.
+	 * @param out the writer.
+	 * @throws IOException if an error occurred writing.
+	 */
+	void writeStart(Writer out) throws IOException
+	{
+		out.write(m_start);
+	}
+
+	/**
+	 * Gets the plan for an element.
+	 * @param previous the plan used last time by the tag handler, which is
+	 * returned if the attributes still match, or null.
+	 * @param element the element name.
+	 * @param type the input type or null if it isn't an input.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @return the plan.
+	 */
+	private static RenderPlan get(RenderPlan previous, String element, String type, String disabled,
+		String required)
+	{
+		if ((previous != null) && previous.m_key.matches(element, type, disabled, required))
+		{
+			return previous;
+		}
+
+		Key key = new Key(element, type, disabled, required);
+		RenderPlan plan = PLANS.get(key);
+
+		if (plan == null)
+		{
+			plan = new RenderPlan(key);
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (PLANS.size() < MAXIMUM_PLANS)
+			{
+				PLANS.putIfAbsent(key, plan);
+			}
+		}
+
+		return plan;
+	}
+
+	/**
+	 * The attribute values a plan is built from.
+	 */
+	private static final class Key
+	{
+		private final String m_element;
+
+		private final String m_type;
+
+		private final String m_disabled;
+
+		private final String m_required;
+
+		private final int m_hashCode;
+
+		/**
+		 * Creates a new key.
+		 * @param element the element name.
+		 * @param type the input type or null.
+		 * @param disabled the disabled or null.
+		 * @param required the required or null.
+		 */
+		Key(String element, String type, String disabled, String required)
+		{
+			m_element = element;
+			m_type = type;
+			m_disabled = disabled;
+			m_required = required;
+			m_hashCode = ((element.hashCode() * 31 + Objects.hashCode(type)) * 31 + Objects.hashCode(disabled)) * 31
+				+ Objects.hashCode(required);
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof Key))
+			{
+				return false;
+			}
+
+			Key key = (Key)object;
+
+			return matches(key.m_element, key.m_type, key.m_disabled, key.m_required);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return m_hashCode;
+		}
+
+		/**
+		 * Determines whether the key is for the given attribute values.
+		 * @param element the element name.
+		 * @param type the input type or null.
+		 * @param disabled the disabled or null.
+		 * @param required the required or null.
+		 * @return true if it matches.
+		 */
+		boolean matches(String element, String type, String disabled, String required)
+		{
+			return m_element.equals(element) && Objects.equals(m_type, type) && Objects.equals(m_disabled, disabled)
+				&& Objects.equals(m_required, required);
+		}
+	}
+}
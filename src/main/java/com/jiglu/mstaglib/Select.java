@@ -19,23 +19,15 @@
 
 package com.jiglu.mstaglib;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import javax.servlet.jsp.JspException;
-import javax.servlet.jsp.JspTagException;
 import javax.servlet.jsp.tagext.BodyTagSupport;
 import javax.servlet.jsp.tagext.DynamicAttributes;
-
-import com.opensymphony.xwork2.ognl.OgnlValueStack;
+import javax.servlet.jsp.tagext.TryCatchFinally;
 
 /**
  * Creates a &lt;select&gt; HTML tag populated from a Struts 2 action.
  */
-public final class Select extends BodyTagSupport implements DynamicAttributes
+public final class Select extends BodyTagSupport implements DynamicAttributes, TryCatchFinally
 {
 	private String m_name;
 
@@ -47,86 +39,44 @@ public final class Select extends BodyTagSupport implements DynamicAttributes
 
 	private String m_errorClass;
 
-	private final Map<String, Object> m_dynamicAttributes = new HashMap<>();
+	private final AttributeList m_dynamicAttributes = new AttributeList();
+
+	/** The plan from the last use, kept while the static attributes stay the same. */
+	private RenderPlan m_plan;
 
 	/** Serial version UID */
 	private static final long serialVersionUID = 8724499266420025211L;
 
-	@SuppressWarnings("resource")
+	@Override
+	public void doCatch(Throwable t) throws Throwable
+	{
+		throw t;
+	}
 	@Override
 	public int doEndTag() throws JspException
 	{
-		try
-		{
-			pageContext.getOut().print("</select>");
-		}
-		catch (IOException e)
-		{
-			throw new JspTagException(e);
-		}
+		TagRenderer.endSelect(pageContext);
+
+		// Clear the state for this use so the handler can be reused
+		m_class = null;
+		m_dynamicAttributes.clear();
 
 		return EVAL_PAGE;
 	}
 
-	@SuppressWarnings("resource")
 	@Override
-	public int doStartTag() throws JspException
+	public void doFinally()
 	{
-		// Validate we have what we need
-		if (m_name == null)
-		{
-			throw new JspTagException("No name attribute supplied");
-		}
-
-		// Get the value stack
-		OgnlValueStack valueStack = ActionUtils.getValueStack(pageContext);
-
-		// Build up the tag
-		StringBuilder output = new StringBuilder(128);
-
-		output.append("<select name=\"").append(ActionUtils.escapeEntities(m_name)).append('"');
-
-		// Handle required attribute converting from boolean if needed
-		if ((m_required != null) && (m_required.equalsIgnoreCase("true") || m_required.equalsIgnoreCase("required")))
-		{
-			output.append(" required=\"required\"");
-		}
-
-		// Handle disabled attribute converting from boolean if needed
-		if ((m_disabled != null) && (m_disabled.equalsIgnoreCase("true") || m_disabled.equalsIgnoreCase("disabled")))
-		{
-			output.append(" disabled=\"disabled\"");
-		}
-
-		// If have an error then swap to the error class
-		Map<String, List<String>> fieldErrors = ActionUtils.getFieldErrors(valueStack);
-
-		if ((m_errorClass != null) && (fieldErrors != null) && fieldErrors.containsKey(m_name))
-		{
-			output.append(" class=\"").append(m_errorClass).append('"');
-		}
-		else if (m_class != null)
-		{
-			output.append(" class=\"").append(m_class).append('"');
-		}
-
-		// Handle dynamic attributes
-		for (Entry<String, Object> entry : m_dynamicAttributes.entrySet())
-		{
-			output.append(' ').append(entry.getKey()).append("=\"").append(entry.getValue()).append('"');
-		}
+		// Don't leave the selection for options later in the request if the body failed
+		TagRenderer.clearSelection(pageContext);
+	}
 
-		output.append('>');
+	@Override
+	public int doStartTag() throws JspException
+	{
+		m_plan = RenderPlan.select(m_plan, m_disabled, m_required);
 
-		// Write it out
-		try
-		{
-			pageContext.getOut().print(output);
-		}
-		catch (IOException e)
-		{
-			throw new JspTagException(e);
-		}
+		TagRenderer.startSelect(pageContext, m_plan, m_name, m_class, m_errorClass, m_dynamicAttributes);
 
 		return EVAL_BODY_INCLUDE;
 	}
@@ -140,6 +90,20 @@ public final class Select extends BodyTagSupport implements DynamicAttributes
 		return m_name;
 	}
 
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_name = null;
+		m_disabled = null;
+		m_required = null;
+		m_class = null;
+		m_errorClass = null;
+		m_dynamicAttributes.clear();
+		m_plan = null;
+	}
+
 	/**
 	 * Sets the disabled.
 	 * @param disabled the disabled.
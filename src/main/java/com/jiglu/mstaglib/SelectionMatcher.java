@@ -0,0 +1,508 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Tests values against a property from the action bean that has been resolved
+ * once, so that many checkboxes or options can be tested without looking the
+ * property up each time.
+ * <p>
+ * Items are compared without converting them to strings where possible:
+ * strings directly, enums by their constant name and integral numbers, boxed
+ * or in a primitive array, by parsing the value being tested once. A set of
+ * strings is tested with {@code contains}. Other collections are scanned when
+ * small, and hashed (or sorted for a primitive array) when large and the
+ * matcher will be used for more than one test.
+ */
+abstract class SelectionMatcher
+{
+	/** The number of items above which they are hashed or sorted rather than scanned. */
+	private static final int SCAN_LIMIT = 16;
+
+	/** The digits of the largest long, used to check a value of the same length won't overflow. */
+	private static final String MAX_DIGITS = String.valueOf(Long.MAX_VALUE);
+
+	/** The digits of the smallest long without its sign. */
+	private static final String MIN_DIGITS = String.valueOf(Long.MIN_VALUE).substring(1);
+
+	/** Matcher for a null property value, which never matches. */
+	private static final SelectionMatcher NONE = new Keys(Collections.emptySet());
+
+	/** Private constructor as instances are only created by the factory methods. */
+	private SelectionMatcher()
+	{
+	}
+
+	/**
+	 * Creates a matcher for a property value from the action bean that will be
+	 * used to test many values.
+	 * @param actionValue the property value.
+	 * @return the matcher.
+	 */
+	static SelectionMatcher create(Object actionValue)
+	{
+		return create(actionValue, true);
+	}
+
+	/**
+	 * Determines whether a single value is selected, without hashing or
+	 * sorting the items as they are only tested once.
+	 * @param actionValue the property value.
+	 * @param value the value to test.
+	 * @return true if selected.
+	 */
+	static boolean isSelected(Object actionValue, String value)
+	{
+		return create(actionValue, false).matches(value);
+	}
+
+	/**
+	 * Determines whether a value is selected.
+	 * @param value the value to test.
+	 * @return true if selected.
+	 */
+	abstract boolean matches(String value);
+
+	/**
+	 * Creates a matcher for a property value from the action bean.
+	 * @param actionValue the property value.
+	 * @param reused whether the matcher will be used for more than one test.
+	 * @return the matcher.
+	 */
+	private static SelectionMatcher create(Object actionValue, boolean reused)
+	{
+		if (actionValue == null)
+		{
+			return NONE;
+		}
+
+		Class<?> type = actionValue.getClass();
+
+		if (type.isArray())
+		{
+			Class<?> component = type.getComponentType();
+
+			if (!component.isPrimitive())
+			{
+				return forItems(Arrays.asList((Object[])actionValue), reused);
+			}
+
+			if ((component == long.class) || (component == int.class) || (component == short.class)
+				|| (component == byte.class))
+			{
+				return Integers.create(actionValue, reused);
+			}
+
+			// Anything else primitive is rare enough to box
+			int length = Array.getLength(actionValue);
+			List<Object> items = new ArrayList<>(length);
+
+			for (int i = 0; i < length; i++)
+			{
+				items.add(Array.get(actionValue, i));
+			}
+
+			return forItems(items, reused);
+		}
+
+		if (actionValue instanceof Set)
+		{
+			return forSet((Set<?>)actionValue, reused);
+		}
+
+		if (actionValue instanceof Collection)
+		{
+			return forItems((Collection<?>)actionValue, reused);
+		}
+
+		if (actionValue instanceof Map)
+		{
+			return forItems(((Map<?, ?>)actionValue).values(), reused);
+		}
+
+		return new Single(getKey(actionValue));
+	}
+
+	/**
+	 * Creates a matcher for a collection of items, hashing them if there are
+	 * enough to be worth it.
+	 * @param items the items.
+	 * @param reused whether the matcher will be used for more than one test.
+	 * @return the matcher.
+	 */
+	private static SelectionMatcher forItems(Collection<?> items, boolean reused)
+	{
+		if (!reused || (items.size() <= SCAN_LIMIT))
+		{
+			return new Items(items);
+		}
+
+		Set<String> keys = new HashSet<>(Math.max(16, (int)(items.size() / 0.75f) + 1));
+
+		for (Object item : items)
+		{
+			if (item != null)
+			{
+				keys.add(getKey(item));
+			}
+		}
+
+		return new Keys(keys);
+	}
+
+	/**
+	 * Creates a matcher for a set. A set of strings that will be reused is
+	 * tested as it is. For a single test the set is tried first, then
+	 * scanned in case it holds anything other than strings, unless it is
+	 * sorted as its comparator may not accept a string.
+	 * @param items the set.
+	 * @param reused whether the matcher will be used for more than one test.
+	 * @return the matcher.
+	 */
+	private static SelectionMatcher forSet(Set<?> items, boolean reused)
+	{
+		if (reused)
+		{
+			return isStrings(items) ? new Keys(items) : forItems(items, true);
+		}
+
+		return (items instanceof SortedSet) ? new Items(items) : new Members(items);
+	}
+
+	/**
+	 * Gets the string an item is matched against.
+	 * @param item the item.
+	 * @return the string.
+	 */
+	private static String getKey(Object item)
+	{
+		return (item instanceof Enum) ? ((Enum<?>)item).name() : item.toString();
+	}
+
+	/**
+	 * Determines whether a value is the canonical decimal form of a long, so
+	 * that it can be parsed without an exception and compares the same way as
+	 * the string form of the number would.
+	 * @param value the value.
+	 * @return true if an integer.
+	 */
+	private static boolean isInteger(String value)
+	{
+		int length = value.length();
+		boolean negative = (length > 1) && (value.charAt(0) == '-');
+		int start = negative ? 1 : 0;
+		int digits = length - start;
+
+		// Reject empty values, leading zeros and negative zero
+		if ((digits == 0) || (digits > MAX_DIGITS.length())
+			|| ((value.charAt(start) == '0') && ((digits > 1) || negative)))
+		{
+			return false;
+		}
+
+		for (int i = start; i < length; i++)
+		{
+			char c = value.charAt(i);
+
+			if ((c < '0') || (c > '9'))
+			{
+				return false;
+			}
+		}
+
+		// As many digits as the limit so compare them to check it isn't exceeded
+		if (digits == MAX_DIGITS.length())
+		{
+			return value.substring(start).compareTo(negative ? MIN_DIGITS : MAX_DIGITS) <= 0;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Determines whether an item is a boxed integral number that can be
+	 * compared as a long.
+	 * @param item the item.
+	 * @return true if integral.
+	 */
+	private static boolean isIntegral(Object item)
+	{
+		return (item instanceof Long) || (item instanceof Integer) || (item instanceof Short) || (item instanceof Byte);
+	}
+
+	/**
+	 * Determines whether a set only holds strings, so it can be tested with
+	 * {@code contains}.
+	 * @param items the set.
+	 * @return true if only strings.
+	 */
+	private static boolean isStrings(Set<?> items)
+	{
+		for (Object item : items)
+		{
+			if (!(item instanceof String))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Matches integral numbers from a primitive array, comparing them with
+	 * the parsed value.
+	 */
+	private static final class Integers extends SelectionMatcher
+	{
+		private final long[] m_values;
+
+		private final boolean m_sorted;
+
+		/**
+		 * Creates a new matcher.
+		 * @param values the numbers.
+		 * @param sorted whether the numbers are sorted.
+		 */
+		private Integers(long[] values, boolean sorted)
+		{
+			m_values = values;
+			m_sorted = sorted;
+		}
+
+		/**
+		 * Creates a matcher for a primitive array of integral numbers, sorting
+		 * a copy if there are enough to be worth it.
+		 * @param array the array.
+		 * @param reused whether the matcher will be used for more than one test.
+		 * @return the matcher.
+		 */
+		static Integers create(Object array, boolean reused)
+		{
+			boolean sort = reused && (Array.getLength(array) > SCAN_LIMIT);
+			long[] values;
+
+			if (array instanceof long[])
+			{
+				values = sort ? ((long[])array).clone() : (long[])array;
+			}
+			else if (array instanceof int[])
+			{
+				values = Arrays.stream((int[])array).asLongStream().toArray();
+			}
+			else
+			{
+				values = new long[Array.getLength(array)];
+
+				for (int i = 0; i < values.length; i++)
+				{
+					values[i] = Array.getLong(array, i);
+				}
+			}
+
+			if (sort)
+			{
+				Arrays.sort(values);
+			}
+
+			return new Integers(values, sort);
+		}
+
+		@Override
+		boolean matches(String value)
+		{
+			if ((value == null) || !isInteger(value))
+			{
+				return false;
+			}
+
+			long number = Long.parseLong(value);
+
+			if (m_sorted)
+			{
+				return Arrays.binarySearch(m_values, number) >= 0;
+			}
+
+			for (long item : m_values)
+			{
+				if (item == number)
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Matches items by scanning them.
+	 */
+	private static final class Items extends SelectionMatcher
+	{
+		private final Collection<?> m_items;
+
+		/**
+		 * Creates a new matcher.
+		 * @param items the items.
+		 */
+		private Items(Collection<?> items)
+		{
+			m_items = items;
+		}
+
+		@Override
+		boolean matches(String value)
+		{
+			if (value == null)
+			{
+				return false;
+			}
+
+			// Only parse the value as a number if there is a number to compare
+			int parsed = 0;
+			long number = 0;
+
+			for (Object item : m_items)
+			{
+				if (item instanceof String)
+				{
+					if (item.equals(value))
+					{
+						return true;
+					}
+				}
+				else if (item instanceof Enum)
+				{
+					if (((Enum<?>)item).name().equals(value))
+					{
+						return true;
+					}
+				}
+				else if (isIntegral(item))
+				{
+					if (parsed == 0)
+					{
+						parsed = isInteger(value) ? 1 : -1;
+						number = (parsed > 0) ? Long.parseLong(value) : 0;
+					}
+
+					if ((parsed > 0) && (((Number)item).longValue() == number))
+					{
+						return true;
+					}
+				}
+				else if ((item != null) && item.toString().equals(value))
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Matches against a set of strings.
+	 */
+	private static final class Keys extends SelectionMatcher
+	{
+		private final Set<?> m_keys;
+
+		/**
+		 * Creates a new matcher.
+		 * @param keys the strings to match.
+		 */
+		private Keys(Set<?> keys)
+		{
+			m_keys = keys;
+		}
+
+		@Override
+		boolean matches(String value)
+		{
+			// Some sets don't allow null to be tested
+			return (value != null) && m_keys.contains(value);
+		}
+	}
+
+	/**
+	 * Matches against a set, falling back to scanning it if the value isn't in
+	 * it.
+	 */
+	private static final class Members extends SelectionMatcher
+	{
+		private final Set<?> m_items;
+
+		private final Items m_scan;
+
+		/**
+		 * Creates a new matcher.
+		 * @param items the set.
+		 */
+		private Members(Set<?> items)
+		{
+			m_items = items;
+			m_scan = new Items(items);
+		}
+
+		@Override
+		boolean matches(String value)
+		{
+			// Some sets don't allow null to be tested
+			return (value != null) && (m_items.contains(value) || m_scan.matches(value));
+		}
+	}
+
+	/**
+	 * Matches a single string.
+	 */
+	private static final class Single extends SelectionMatcher
+	{
+		private final String m_value;
+
+		/**
+		 * Creates a new matcher.
+		 * @param value the string to match.
+		 */
+		private Single(String value)
+		{
+			m_value = value;
+		}
+
+		@Override
+		boolean matches(String value)
+		{
+			return m_value.equals(value);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.tagext.BodyContent;
+import javax.servlet.jsp.tagext.DynamicAttributes;
+import javax.servlet.jsp.tagext.JspFragment;
+import javax.servlet.jsp.tagext.SimpleTagSupport;
+
+/**
+ * Creates an &lt;option&gt; HTML tag like {@link Option} but as a simple tag,
+ * so there is no handler state to reset between uses. With a label or a key
+ * the body is never evaluated, otherwise it is buffered to be written as the label.
+ */
+public final class SimpleOption extends SimpleTagSupport implements DynamicAttributes
+{
+	private String m_value;
+
+	private String m_label;
+
+	private String m_key;
+
+	private String m_bundle;
+
+	private String m_disabled;
+
+	private final AttributeList m_dynamicAttributes = new AttributeList();
+
+	@Override
+	public void doTag() throws JspException, IOException
+	{
+		PageContext pageContext = (PageContext)getJspContext();
+		JspFragment fragment = getJspBody();
+
+		if ((m_label != null) || (m_key != null) || (fragment == null))
+		{
+			TagRenderer.option(pageContext, m_value, m_label, m_key, m_bundle, null, m_disabled, m_dynamicAttributes);
+
+			return;
+		}
+
+		BodyContent body = pageContext.pushBody();
+
+		try
+		{
+			fragment.invoke(body);
+		}
+		finally
+		{
+			pageContext.popBody();
+		}
+
+		TagRenderer.option(pageContext, m_value, null, null, null, body, m_disabled, m_dynamicAttributes);
+	}
+
+	/**
+	 * Sets the bundle.
+	 * @param bundle the bundle.
+	 */
+	public void setBundle(String bundle)
+	{
+		m_bundle = bundle;
+	}
+
+	/**
+	 * Sets the disabled.
+	 * @param disabled the disabled.
+	 */
+	public void setDisabled(String disabled)
+	{
+		m_disabled = disabled;
+	}
+
+	@Override
+	public void setDynamicAttribute(String uri, String localName, Object value) throws JspException
+	{
+		m_dynamicAttributes.put(localName, value);
+	}
+
+	/**
+	 * Sets the key.
+	 * @param key the key.
+	 */
+	public void setKey(String key)
+	{
+		m_key = key;
+	}
+
+	/**
+	 * Sets the label.
+	 * @param label the label.
+	 */
+	public void setLabel(String label)
+	{
+		m_label = label;
+	}
+
+	/**
+	 * Sets the value.
+	 * @param value the value.
+	 */
+	public void setValue(String value)
+	{
+		m_value = value;
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The slowest renders and lookups of the current interval that took longer
+ * than the slow threshold. A fixed number of the slowest are held, and a
+ * slower call replaces the fastest of them once they are all taken, so a
+ * burst of calls just over the threshold can't push out a real outlier. The
+ * interval ends when the calls are drained for a report. Calls no slower than
+ * the fastest held are turned away by reading a single field, so apart from
+ * the clock reads around each call the cost is only paid by the slowest, and
+ * the memory held is bounded.
+ */
+final class SlowRenders
+{
+	/** The number of the slowest calls held and reported. */
+	private static final int CAPACITY = 10;
+
+	/** The slowest calls, in no particular order, guarded by this. */
+	private final Trace[] m_traces = new Trace[CAPACITY];
+
+	/** The number of slow calls held, guarded by this. */
+	private int m_count;
+
+	/** The time of the fastest call held once they are all taken, or -1 while there is still room. */
+	private volatile long m_floor = -1;
+
+	/**
+	 * Creates a new empty set of calls.
+	 */
+	SlowRenders()
+	{
+	}
+
+	/**
+	 * Removes the slow calls, so that the next report covers a new interval.
+	 * @return the slowest calls of the interval, slowest first.
+	 */
+	synchronized String[] drain()
+	{
+		String[] slowest = getSlowest();
+
+		Arrays.fill(m_traces, null);
+		m_count = 0;
+		m_floor = -1;
+
+		return slowest;
+	}
+
+	/**
+	 * Gets the slowest calls of the interval without removing them.
+	 * @return the calls, slowest first.
+	 */
+	synchronized String[] getSlowest()
+	{
+		Trace[] traces = Arrays.copyOf(m_traces, m_count);
+		String[] slowest = new String[traces.length];
+
+		Arrays.sort(traces, (a, b) -> Long.compare(b.m_nanos, a.m_nanos));
+
+		for (int i = 0; i < slowest.length; i++)
+		{
+			slowest[i] = traces[i].toString();
+		}
+
+		return slowest;
+	}
+
+	/**
+	 * Records a slow call if it is one of the slowest of the interval,
+	 * replacing the fastest held if they are all taken.
+	 * @param request the request the call was made for or null if it isn't
+	 * known.
+	 * @param tag the tag rendered or the kind of call.
+	 * @param name the property name or null if there isn't one.
+	 * @param nanos the time the call took in nanoseconds.
+	 */
+	void record(ServletRequest request, String tag, String name, long nanos)
+	{
+		if (nanos <= m_floor)
+		{
+			return;
+		}
+
+		Trace trace = new Trace(getPage(request), tag, name, nanos);
+
+		synchronized (this)
+		{
+			if (m_count < CAPACITY)
+			{
+				m_traces[m_count++] = trace;
+			}
+			else
+			{
+				int fastest = getFastest();
+
+				// Another thread may have raised the floor since it was read
+				if (nanos <= m_traces[fastest].m_nanos)
+				{
+					return;
+				}
+
+				m_traces[fastest] = trace;
+			}
+
+			if (m_count == CAPACITY)
+			{
+				m_floor = m_traces[getFastest()].m_nanos;
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of the fastest call held, which must only be called with
+	 * all of them taken and holding the lock.
+	 * @return the index.
+	 */
+	private int getFastest()
+	{
+		int fastest = 0;
+
+		for (int i = 1; i < CAPACITY; i++)
+		{
+			if (m_traces[i].m_nanos < m_traces[fastest].m_nanos)
+			{
+				fastest = i;
+			}
+		}
+
+		return fastest;
+	}
+
+	/**
+	 * Gets the path of the JSP rendering for a request.
+	 * @param request the request or null.
+	 * @return the path or a dash if it isn't known.
+	 */
+	private static String getPage(ServletRequest request)
+	{
+		if (request == null)
+		{
+			return "-";
+		}
+
+		// An included page has its own path in the request attributes
+		Object path = request.getAttribute(RequestDispatcher.INCLUDE_SERVLET_PATH);
+
+		if (path != null)
+		{
+			return path.toString();
+		}
+
+		return (request instanceof HttpServletRequest) ? ((HttpServletRequest)request).getServletPath() : "-";
+	}
+
+	/**
+	 * A slow call.
+	 */
+	private static final class Trace
+	{
+		private final String m_page;
+
+		private final String m_tag;
+
+		private final String m_name;
+
+		private final long m_nanos;
+
+		/**
+		 * Creates a new trace.
+		 * @param page the page path.
+		 * @param tag the tag or kind of call.
+		 * @param name the property name or null.
+		 * @param nanos the time taken in nanoseconds.
+		 */
+		Trace(String page, String tag, String name, long nanos)
+		{
+			m_page = page;
+			m_tag = tag;
+			m_name = name;
+			m_nanos = nanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.ROOT, "%.3f ms %s %s %s", m_nanos / 1e6, m_page, m_tag,
+				(m_name != null) ? m_name : "-");
+		}
+	}
+}
@@ -0,0 +1,522 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.jsp.PageContext;
+
+import org.apache.struts2.StrutsStatics;
+
+import com.opensymphony.xwork2.ognl.OgnlValueStack;
+
+/**
+ * Rendering metrics for the tags, kept in striped counters so that recording
+ * them doesn't contend between requests. Render and lookup counts are always
+ * kept. Timings and lookups by name cost two clock reads or a map lookup
+ * each, so while timing is enabled they are only kept for a random sample of
+ * one in {@value #SAMPLE_RATE} calls, and the counts of the sample are scaled
+ * up by the same rate when they are reported so they can be compared with the
+ * totals. Timing is enabled unless the
+ * <code>com.jiglu.mstaglib.timing</code> system property is false, and can
+ * also be switched through JMX.
+ * <p>
+ * Tracing of slow calls is enabled by setting the
+ * <code>com.jiglu.mstaglib.slowThreshold</code> system property to the
+ * threshold in microseconds, or through JMX. Renders and lookups that take
+ * longer are recorded with the page, tag and property in {@link SlowRenders}.
+ * Every call is timed while tracing is enabled, so that no slow call is
+ * missed, but only the same sample is kept for the timings and names.
+ */
+final class TagMetrics implements TagMetricsMBean
+{
+	/** The index of the input tag. */
+	static final int INPUT = 0;
+
+	/** The index of the option tag. */
+	static final int OPTION = 1;
+
+	/** The index of the options tag. */
+	static final int OPTIONS = 2;
+
+	/** The index of the select tag. */
+	static final int SELECT = 3;
+
+	/** The index of the textarea tag. */
+	static final int TEXTAREA = 4;
+
+	/** The index of the checkboxes tag. */
+	static final int CHECKBOXES = 5;
+
+	/** The index of the radios tag. */
+	static final int RADIOS = 6;
+
+	/** The start time returned when timing and tracing are disabled. */
+	static final long UNTIMED = Long.MIN_VALUE;
+
+	/** The tag names by index, as reported for slow renders. */
+	private static final String[] TAG_NAMES = {"input", "option", "options", "select", "textarea", "checkboxes",
+		"radios"};
+
+	/** The default slow threshold in microseconds. */
+	private static final long DEFAULT_SLOW_THRESHOLD = 1000;
+
+	/** The number of calls for each one timed while timing is enabled, which must be a power of two. */
+	static final int SAMPLE_RATE = 64;
+
+	/** The number of tags counted. */
+	private static final int TAGS = 7;
+
+	/** The maximum number of names counted, so generated names can't grow the counts without limit. */
+	private static final int MAXIMUM_NAMES = 1024;
+
+	/** The number of names reported as hot. */
+	private static final int HOT_NAMES = 20;
+
+	/** The shared instance. */
+	private static final TagMetrics INSTANCE =
+		new TagMetrics(Boolean.parseBoolean(System.getProperty("com.jiglu.mstaglib.timing", "true")),
+			Long.getLong("com.jiglu.mstaglib.slowThreshold", -1));
+
+	private final LongAdder[] m_renders = new LongAdder[TAGS];
+
+	private final LongAdder m_lookups = new LongAdder();
+
+	private final LongAdder m_lookupFailures = new LongAdder();
+
+	private final LatencyHistogram m_lookupTimes = new LatencyHistogram();
+
+	private final LatencyHistogram m_renderTimes = new LatencyHistogram();
+
+	private final ConcurrentMap<String, LongAdder> m_names = new ConcurrentHashMap<>();
+
+	private final SlowRenders m_slowRenders = new SlowRenders();
+
+	private volatile boolean m_timing;
+
+	private volatile boolean m_tracing;
+
+	private volatile long m_slowThreshold;
+
+	/** Whether either timing or tracing is enabled, so a call only needs to check one field to see if it is timed. */
+	private volatile boolean m_clocked;
+
+	/**
+	 * Creates a new set of metrics.
+	 * @param timing true to enable timing.
+	 * @param slowThreshold the slow threshold in microseconds to enable
+	 * tracing or a negative number to leave it disabled.
+	 */
+	private TagMetrics(boolean timing, long slowThreshold)
+	{
+		for (int i = 0; i < TAGS; i++)
+		{
+			m_renders[i] = new LongAdder();
+		}
+
+		m_timing = timing;
+		m_tracing = (slowThreshold >= 0);
+		m_slowThreshold = ((slowThreshold >= 0) ? slowThreshold : DEFAULT_SLOW_THRESHOLD) * 1000;
+		m_clocked = m_timing || m_tracing;
+	}
+
+	/**
+	 * Gets the shared instance.
+	 * @return the metrics.
+	 */
+	static TagMetrics getInstance()
+	{
+		return INSTANCE;
+	}
+
+	@Override
+	public long getCheckboxesRenders()
+	{
+		return m_renders[CHECKBOXES].sum();
+	}
+
+	@Override
+	public long getExpressionCacheHits()
+	{
+		return ExpressionCache.getInstance().getHits();
+	}
+
+	@Override
+	public long getExpressionCacheMisses()
+	{
+		return ExpressionCache.getInstance().getMisses();
+	}
+
+	@Override
+	public int getExpressionCacheSize()
+	{
+		return ExpressionCache.getInstance().size();
+	}
+
+	@Override
+	public String[] getHotNames()
+	{
+		List<Entry<String, LongAdder>> entries = new ArrayList<>(m_names.entrySet());
+		List<String> names = new ArrayList<>();
+
+		entries.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+
+		for (int i = 0; i < Math.min(entries.size(), HOT_NAMES); i++)
+		{
+			Entry<String, LongAdder> entry = entries.get(i);
+
+			names.add(entry.getKey() + '=' + (entry.getValue().sum() * SAMPLE_RATE));
+		}
+
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public long getInputRenders()
+	{
+		return m_renders[INPUT].sum();
+	}
+
+	@Override
+	public long getLookupFailures()
+	{
+		return m_lookupFailures.sum();
+	}
+
+	@Override
+	public long getLookups()
+	{
+		return m_lookups.sum();
+	}
+
+	@Override
+	public long[] getLookupTimeHistogram()
+	{
+		return weigh(m_lookupTimes.getCounts());
+	}
+
+	@Override
+	public double getLookupTimeMean()
+	{
+		return m_lookupTimes.getMean() / 1000.0;
+	}
+
+	@Override
+	public double getLookupTime99thPercentile()
+	{
+		return m_lookupTimes.getPercentile(99) / 1000.0;
+	}
+
+	@Override
+	public long getOptionRenders()
+	{
+		return m_renders[OPTION].sum();
+	}
+
+	@Override
+	public long getOptionsRenders()
+	{
+		return m_renders[OPTIONS].sum();
+	}
+
+	@Override
+	public long getRadiosRenders()
+	{
+		return m_renders[RADIOS].sum();
+	}
+
+	@Override
+	public long[] getRenderTimeHistogram()
+	{
+		return weigh(m_renderTimes.getCounts());
+	}
+
+	@Override
+	public double getRenderTimeMean()
+	{
+		return m_renderTimes.getMean() / 1000.0;
+	}
+
+	@Override
+	public double getRenderTime99thPercentile()
+	{
+		return m_renderTimes.getPercentile(99) / 1000.0;
+	}
+
+	@Override
+	public long getSelectRenders()
+	{
+		return m_renders[SELECT].sum();
+	}
+
+	@Override
+	public String[] getSlowRenders()
+	{
+		return m_slowRenders.getSlowest();
+	}
+
+	@Override
+	public long getSlowThreshold()
+	{
+		return m_slowThreshold / 1000;
+	}
+
+	@Override
+	public long getTextareaRenders()
+	{
+		return m_renders[TEXTAREA].sum();
+	}
+
+	@Override
+	public boolean isTimingEnabled()
+	{
+		return m_timing;
+	}
+
+	@Override
+	public boolean isTracingEnabled()
+	{
+		return m_tracing;
+	}
+
+	@Override
+	public void reset()
+	{
+		for (LongAdder renders : m_renders)
+		{
+			renders.reset();
+		}
+
+		m_lookups.reset();
+		m_lookupFailures.reset();
+		m_lookupTimes.reset();
+		m_renderTimes.reset();
+		m_names.clear();
+		m_slowRenders.drain();
+	}
+
+	@Override
+	public void setSlowThreshold(long threshold)
+	{
+		m_slowThreshold = threshold * 1000;
+	}
+
+	@Override
+	public synchronized void setTimingEnabled(boolean enabled)
+	{
+		m_timing = enabled;
+		m_clocked = m_timing || m_tracing;
+	}
+
+	@Override
+	public synchronized void setTracingEnabled(boolean enabled)
+	{
+		m_tracing = enabled;
+		m_clocked = m_timing || m_tracing;
+	}
+
+	/**
+	 * Removes the slow calls recorded so far, so that the next report covers
+	 * a new interval.
+	 * @return the slowest calls, slowest first.
+	 */
+	String[] drainSlowRenders()
+	{
+		return m_slowRenders.drain();
+	}
+
+	/**
+	 * Records a lookup of a property made through the value stack.
+	 * @param valueStack the value stack the lookup was made for.
+	 * @param name the name of the property.
+	 * @param start the start time of the lookup.
+	 * @param found true if the lookup succeeded.
+	 */
+	void recordLookup(OgnlValueStack valueStack, String name, long start, boolean found)
+	{
+		long elapsed = recordLookup(name, start, found);
+
+		if (elapsed >= 0)
+		{
+			// The lookup doesn't have the page context but Struts keeps the request in the stack context
+			m_slowRenders.record((ServletRequest)valueStack.getContext().get(StrutsStatics.HTTP_REQUEST), "lookup",
+				name, elapsed);
+		}
+	}
+
+	/**
+	 * Records a lookup of a property made for a request.
+	 * @param request the request the lookup was made for.
+	 * @param name the name of the property.
+	 * @param start the start time of the lookup.
+	 * @param found true if the lookup succeeded.
+	 */
+	void recordLookup(ServletRequest request, String name, long start, boolean found)
+	{
+		long elapsed = recordLookup(name, start, found);
+
+		if (elapsed >= 0)
+		{
+			m_slowRenders.record(request, "lookup", name, elapsed);
+		}
+	}
+
+	/**
+	 * Records the render of a tag.
+	 * @param tag the index of the tag.
+	 * @param name the name of the property the tag is for or null if it
+	 * isn't for one.
+	 * @param pageContext the page context.
+	 * @param start the start time of the render.
+	 */
+	void recordRender(int tag, String name, PageContext pageContext, long start)
+	{
+		m_renders[tag].increment();
+
+		if (start == UNTIMED)
+		{
+			return;
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		if (m_tracing && (elapsed >= m_slowThreshold))
+		{
+			m_slowRenders.record(pageContext.getRequest(), TAG_NAMES[tag], name, elapsed);
+		}
+
+		if (!isKept())
+		{
+			return;
+		}
+
+		m_renderTimes.record(elapsed);
+	}
+
+	/**
+	 * Gets the start time for a lookup or render.
+	 * @return the time or {@link #UNTIMED} if timing and tracing are disabled
+	 * or the call isn't in the sample timed.
+	 */
+	long start()
+	{
+		if (!m_clocked)
+		{
+			return UNTIMED;
+		}
+
+		return (m_tracing || isSampled()) ? System.nanoTime() : UNTIMED;
+	}
+
+	/**
+	 * Determines whether a call is in the sample.
+	 * @return true one time in {@value #SAMPLE_RATE} at random.
+	 */
+	private static boolean isSampled()
+	{
+		return (ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) == 0;
+	}
+
+	/**
+	 * Determines whether the timing of a timed call is kept. While tracing
+	 * every call is timed, so the sample is taken here instead of when the
+	 * call started, keeping the timings and names a sample at the same rate
+	 * whether or not tracing is enabled.
+	 * @return true if the timing is kept.
+	 */
+	private boolean isKept()
+	{
+		return m_timing && (!m_tracing || isSampled());
+	}
+
+	/**
+	 * Scales up the counts of a histogram of the sample to estimate the
+	 * counts for all calls.
+	 * @param counts the counts of the sample.
+	 * @return the estimated counts.
+	 */
+	private static long[] weigh(long[] counts)
+	{
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] *= SAMPLE_RATE;
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Records the counts and timings of a lookup of a property.
+	 * @param name the name of the property.
+	 * @param start the start time of the lookup.
+	 * @param found true if the lookup succeeded.
+	 * @return the time taken if the lookup should be traced as slow or -1 if
+	 * not.
+	 */
+	private long recordLookup(String name, long start, boolean found)
+	{
+		m_lookups.increment();
+
+		if (!found)
+		{
+			m_lookupFailures.increment();
+		}
+
+		if (start == UNTIMED)
+		{
+			return -1;
+		}
+
+		long elapsed = System.nanoTime() - start;
+		long traced = (m_tracing && (elapsed >= m_slowThreshold)) ? elapsed : -1;
+
+		if (!isKept())
+		{
+			return traced;
+		}
+
+		m_lookupTimes.record(elapsed);
+
+		LongAdder count = m_names.get(name);
+
+		if (count == null)
+		{
+			// The size check isn't atomic so the counts may overshoot by a few names under contention
+			if (m_names.size() >= MAXIMUM_NAMES)
+			{
+				return traced;
+			}
+
+			count = m_names.computeIfAbsent(name, key -> new LongAdder());
+		}
+
+		count.increment();
+
+		return traced;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Registers the rendering metrics of the tag library as an MBean for the life
+ * of the web application. It is declared in the TLD so containers that scan
+ * TLDs for listeners register it without any configuration. The MBean is
+ * named <code>com.jiglu.mstaglib:type=TagMetrics,context=</code> followed by
+ * the quoted context path.
+ * <p>
+ * If the <code>com.jiglu.mstaglib.slowLogInterval</code> context parameter is
+ * set to a number of seconds then tracing of slow calls is enabled and the
+ * slowest calls in each interval are written to the context log.
+ */
+public final class TagMetricsListener implements ServletContextListener
+{
+	/** The context parameter for the interval between logs of slow calls. */
+	private static final String SLOW_LOG_INTERVAL = "com.jiglu.mstaglib.slowLogInterval";
+
+	private ObjectName m_name;
+
+	private ScheduledExecutorService m_logger;
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event)
+	{
+		if (m_logger != null)
+		{
+			m_logger.shutdownNow();
+			m_logger = null;
+		}
+
+		if (m_name == null)
+		{
+			return;
+		}
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(m_name);
+		}
+		catch (JMException e)
+		{
+			event.getServletContext().log("Unable to unregister the tag metrics MBean " + m_name, e);
+		}
+
+		m_name = null;
+	}
+
+	@Override
+	public void contextInitialized(ServletContextEvent event)
+	{
+		ServletContext servletContext = event.getServletContext();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try
+		{
+			ObjectName name = new ObjectName("com.jiglu.mstaglib:type=TagMetrics,context=" +
+				ObjectName.quote(servletContext.getContextPath()));
+
+			server.registerMBean(new StandardMBean(TagMetrics.getInstance(), TagMetricsMBean.class), name);
+			m_name = name;
+		}
+		catch (JMException e)
+		{
+			// Metrics are optional so the application carries on without them
+			servletContext.log("Unable to register the tag metrics MBean", e);
+		}
+
+		String interval = servletContext.getInitParameter(SLOW_LOG_INTERVAL);
+
+		if ((interval != null) && !interval.isEmpty())
+		{
+			try
+			{
+				startLogger(servletContext, Long.parseLong(interval.trim()));
+			}
+			catch (NumberFormatException e)
+			{
+				servletContext.log("Invalid " + SLOW_LOG_INTERVAL + " context parameter: " + interval, e);
+			}
+		}
+	}
+
+	/**
+	 * Enables tracing and starts writing the slowest calls to the context log.
+	 * @param servletContext the servlet context.
+	 * @param interval the interval between logs in seconds.
+	 */
+	private void startLogger(ServletContext servletContext, long interval)
+	{
+		if (interval <= 0)
+		{
+			return;
+		}
+
+		TagMetrics metrics = TagMetrics.getInstance();
+		metrics.setTracingEnabled(true);
+
+		m_logger = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "mstaglib-slow-renders");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		m_logger.scheduleAtFixedRate(() ->
+		{
+			String[] slowest = metrics.drainSlowRenders();
+
+			if (slowest.length > 0)
+			{
+				servletContext.log("Slowest tag renders and lookups: " + String.join("; ", slowest));
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+/**
+ * Management interface for the rendering metrics of the tag library. Counters
+ * are always kept, while timings and name counts are only kept for a random
+ * sample of one in 64 calls while timing is enabled, whether or not tracing is
+ * enabled, and slow calls are only recorded while tracing is enabled. The
+ * histogram and name counts are those of the sample multiplied by 64, so they
+ * estimate the number of calls and can be compared with the render and lookup
+ * totals, which are exact. Times are in microseconds.
+ */
+public interface TagMetricsMBean
+{
+	/**
+	 * Gets the number of checkboxes tags rendered.
+	 * @return the number of renders.
+	 */
+	long getCheckboxesRenders();
+
+	/**
+	 * Gets the number of lookups that found a parsed expression in the cache.
+	 * @return the number of hits.
+	 */
+	long getExpressionCacheHits();
+
+	/**
+	 * Gets the number of lookups that had to check and parse the name.
+	 * @return the number of misses.
+	 */
+	long getExpressionCacheMisses();
+
+	/**
+	 * Gets the number of names in the expression cache.
+	 * @return the size.
+	 */
+	int getExpressionCacheSize();
+
+	/**
+	 * Gets the most looked up property names with their estimated counts, most
+	 * looked up first.
+	 * @return the names, each followed by an equals sign and its count.
+	 */
+	String[] getHotNames();
+
+	/**
+	 * Gets the number of input tags rendered.
+	 * @return the number of renders.
+	 */
+	long getInputRenders();
+
+	/**
+	 * Gets the number of property lookups that failed.
+	 * @return the number of failures.
+	 */
+	long getLookupFailures();
+
+	/**
+	 * Gets the number of property lookups on the value stack or a nested bean.
+	 * @return the number of lookups.
+	 */
+	long getLookups();
+
+	/**
+	 * Gets the estimated counts of lookup times in buckets that double in size,
+	 * where bucket <code>i</code> holds times below <code>2^i</code>
+	 * nanoseconds.
+	 * @return the counts.
+	 */
+	long[] getLookupTimeHistogram();
+
+	/**
+	 * Gets the mean lookup time.
+	 * @return the mean.
+	 */
+	double getLookupTimeMean();
+
+	/**
+	 * Gets an upper bound for the 99th percentile of lookup times.
+	 * @return the upper bound.
+	 */
+	double getLookupTime99thPercentile();
+
+	/**
+	 * Gets the number of option tags rendered.
+	 * @return the number of renders.
+	 */
+	long getOptionRenders();
+
+	/**
+	 * Gets the number of options tags rendered.
+	 * @return the number of renders.
+	 */
+	long getOptionsRenders();
+
+	/**
+	 * Gets the number of radios tags rendered.
+	 * @return the number of renders.
+	 */
+	long getRadiosRenders();
+
+	/**
+	 * Gets the estimated counts of render times in buckets that double in size,
+	 * where bucket <code>i</code> holds times below <code>2^i</code>
+	 * nanoseconds.
+	 * @return the counts.
+	 */
+	long[] getRenderTimeHistogram();
+
+	/**
+	 * Gets the mean render time of a tag.
+	 * @return the mean.
+	 */
+	double getRenderTimeMean();
+
+	/**
+	 * Gets an upper bound for the 99th percentile of render times.
+	 * @return the upper bound.
+	 */
+	double getRenderTime99thPercentile();
+
+	/**
+	 * Gets the number of select tags rendered.
+	 * @return the number of renders.
+	 */
+	long getSelectRenders();
+
+	/**
+	 * Gets the slowest renders and lookups recorded since the last report or
+	 * reset, each with the time taken, the page, the tag or
+	 * <code>lookup</code> and the property name.
+	 * @return the calls, slowest first.
+	 */
+	String[] getSlowRenders();
+
+	/**
+	 * Gets the time a render or lookup has to take to be recorded while
+	 * tracing.
+	 * @return the threshold.
+	 */
+	long getSlowThreshold();
+
+	/**
+	 * Gets the number of textarea tags rendered.
+	 * @return the number of renders.
+	 */
+	long getTextareaRenders();
+
+	/**
+	 * Determines whether timing is enabled.
+	 * @return true if enabled.
+	 */
+	boolean isTimingEnabled();
+
+	/**
+	 * Determines whether slow calls are traced.
+	 * @return true if enabled.
+	 */
+	boolean isTracingEnabled();
+
+	/**
+	 * Resets all of the metrics.
+	 */
+	void reset();
+
+	/**
+	 * Sets the time a render or lookup has to take to be recorded while
+	 * tracing.
+	 * @param threshold the threshold.
+	 */
+	void setSlowThreshold(long threshold);
+
+	/**
+	 * Sets whether timing is enabled.
+	 * @param enabled true to enable timing.
+	 */
+	void setTimingEnabled(boolean enabled);
+
+	/**
+	 * Sets whether slow calls are traced.
+	 * @param enabled true to enable tracing.
+	 */
+	void setTracingEnabled(boolean enabled);
+}
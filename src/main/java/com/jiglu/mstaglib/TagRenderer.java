@@ -0,0 +1,737 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.tagext.BodyContent;
+
+/**
+ * Renders the tags without a tag handler. The tag handlers delegate to these
+ * methods, and the Jasper tag plugins in {@code com.jiglu.mstaglib.jasper}
+ * generate calls to them so that a compiled JSP can skip the tag handler
+ * lifecycle altogether.
+ * <p>
+ * Attribute values are passed as the tag would receive them, with null for an
+ * attribute that isn't specified. Any other attributes are passed as
+ * alternating names and values, where a value may be an
+ * {@link AttributeFragment} for a literal that has already been escaped. All
+ * other attribute values are escaped as they are written.
+ * <p>
+ * The parts of a tag that only depend on its static attributes come from a
+ * shared {@link RenderPlan}, which the tag handlers keep between uses.
+ */
+public final class TagRenderer
+{
+	/** Private default constructor to prevent external instantiation. */
+	private TagRenderer()
+	{
+	}
+
+	/**
+	 * Renders a group of checkboxes or radio buttons, one for each item. The
+	 * property is resolved once for the whole group and each value tested
+	 * against it, and the attributes shared by every input are only escaped
+	 * once.
+	 * @param pageContext the page context.
+	 * @param plan the plan for a checkbox or radio input.
+	 * @param name the name.
+	 * @param items a collection, array or map of items, or an enum class or
+	 * its name.
+	 * @param itemValue the property of each item to use as the value or null.
+	 * @param itemLabel the property of each item to use as the label or null.
+	 * @param cacheKey the key to share the items between requests under or
+	 * null.
+	 * @param labels false to leave out the labels or null to wrap each input
+	 * in a label.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attributes, which are written on each input.
+	 * @throws JspException if an error occurred.
+	 */
+	@SuppressWarnings("resource")
+	static void choices(PageContext pageContext, RenderPlan plan, String name, Object items, String itemValue,
+		String itemLabel, String cacheKey, String labels, String cssClass, String errorClass, AttributeList attributes)
+		throws JspException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+
+		// Validate we have what we need
+		if (name == null)
+		{
+			throw new JspTagException("No name attribute supplied");
+		}
+
+		// Get the render context for the request and the name including any nested path
+		RenderContext context = RenderContext.get(pageContext);
+		String fullName = context.getFullName(name);
+
+		// Resolve the items, the selection and error state once for all of the inputs
+		OptionModel model = OptionModel.get(context, items, itemValue, itemLabel, cacheKey, null, null);
+		SelectionMatcher selection = SelectionMatcher.create(context.getActionValue(name));
+		boolean error = (errorClass != null) && context.hasFieldError(fullName);
+
+		// Write out the tags
+		try
+		{
+			StringWriter input = new StringWriter();
+
+			plan.writeStart(input);
+			ActionUtils.escapeEntities(fullName, input);
+			input.write("\" value=\"");
+
+			StringWriter end = new StringWriter();
+
+			writeCommonAttributes(end, plan, error ? errorClass : cssClass, attributes);
+			end.write(" />");
+
+			JspWriter out = pageContext.getOut();
+
+			model.renderInputs(out, input.toString(), end.toString(), selection, !"false".equalsIgnoreCase(labels));
+
+			metrics.recordRender(plan.getType().equalsIgnoreCase("radio") ? TagMetrics.RADIOS : TagMetrics.CHECKBOXES,
+				fullName, pageContext, start);
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+	}
+
+	/**
+	 * Clears the selection of a select tag whether or not it was rendered
+	 * successfully, which the code compiled by the tag plugin does after the
+	 * end of the tag.
+	 * @param pageContext the page context.
+	 */
+	public static void clearSelection(PageContext pageContext)
+	{
+		RenderContext.clearSelection(pageContext);
+	}
+
+	/**
+	 * Renders the end of a select tag.
+	 * @param pageContext the page context.
+	 * @throws JspException if an error occurred.
+	 */
+	@SuppressWarnings("resource")
+	public static void endSelect(PageContext pageContext) throws JspException
+	{
+		// The options have all been rendered so the selection is finished with
+		RenderContext.get(pageContext).setSelection(null);
+
+		try
+		{
+			pageContext.getOut().write("</select>");
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+	}
+
+	/**
+	 * Renders an input tag with a property value that is a date, time or
+	 * number formatted with a pattern.
+	 * @param pageContext the page context.
+	 * @param type the type.
+	 * @param name the name.
+	 * @param value the value or null.
+	 * @param format the pattern to format the property value with or null.
+	 * @param checked the checked or null.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void formattedInput(PageContext pageContext, String type, String name, String value, String format,
+		String checked, String disabled, String required, String cssClass, String errorClass, Object... attributes)
+		throws JspException
+	{
+		input(pageContext, RenderPlan.input(null, type, disabled, required), name, value, format, checked, cssClass,
+			errorClass, AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders a textarea tag with a property value that is a date, time or
+	 * number formatted with a pattern.
+	 * @param pageContext the page context.
+	 * @param name the name.
+	 * @param value the value or null.
+	 * @param format the pattern to format the property value with or null.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void formattedTextarea(PageContext pageContext, String name, String value, String format,
+		String disabled, String required, String cssClass, String errorClass, Object... attributes) throws JspException
+	{
+		textarea(pageContext, RenderPlan.textarea(null, disabled, required), name, value, format, cssClass, errorClass,
+			AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders an input tag.
+	 * @param pageContext the page context.
+	 * @param type the type.
+	 * @param name the name.
+	 * @param value the value or null.
+	 * @param checked the checked or null.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void input(PageContext pageContext, String type, String name, String value, String checked,
+		String disabled, String required, String cssClass, String errorClass, Object... attributes) throws JspException
+	{
+		input(pageContext, RenderPlan.input(null, type, disabled, required), name, value, null, checked, cssClass,
+			errorClass, AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders an input tag.
+	 * @param pageContext the page context.
+	 * @param plan the plan for the type, disabled and required.
+	 * @param name the name.
+	 * @param value the value or null.
+	 * @param format the pattern to format the property value with or null to
+	 * use the format of a date or time input type.
+	 * @param checked the checked or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attributes.
+	 * @throws JspException if an error occurred.
+	 */
+	@SuppressWarnings("resource")
+	static void input(PageContext pageContext, RenderPlan plan, String name, String value, String format,
+		String checked, String cssClass, String errorClass, AttributeList attributes) throws JspException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+
+		// Validate we have what we need
+		if (name == null)
+		{
+			throw new JspTagException("No name attribute supplied");
+		}
+
+		// Get the render context for the request and the name including any nested path
+		RenderContext context = RenderContext.get(pageContext);
+		String fullName = context.getFullName(name);
+
+		// Work out the checked state and value before anything is written
+		int kind = plan.getKind();
+		boolean isChecked = false;
+		String actionValue = null;
+
+		if (kind == RenderPlan.CHECKABLE)
+		{
+			if (checked != null)
+			{
+				isChecked = isSet(checked, "checked");
+			}
+			else
+			{
+				// We default to a value of true if none has been supplied
+				if (value == null)
+				{
+					value = "true";
+				}
+
+				isChecked = ActionUtils.isSelected(context.getActionValue(name), value);
+			}
+		}
+		else if ((kind == RenderPlan.VALUE) && (value == null))
+		{
+			Object propertyValue = context.getActionValue(name);
+
+			// Format dates and numbers with the pattern given, or the one HTML needs for a date or time type
+			if (format != null)
+			{
+				propertyValue = ValueFormatter.format(propertyValue, format,
+					plan.isLocalized() ? context.getLocale(pageContext) : Locale.ROOT);
+			}
+			else if (plan.getFormat() != null)
+			{
+				propertyValue = ValueFormatter.formatTemporal(propertyValue, plan.getFormat(), plan.getFormatFields());
+			}
+
+			actionValue = (propertyValue != null) ? propertyValue.toString() : "";
+		}
+
+		boolean error = (errorClass != null) && context.hasFieldError(fullName);
+
+		// Write out the tag
+		try
+		{
+			JspWriter out = pageContext.getOut();
+
+			plan.writeStart(out);
+			ActionUtils.escapeEntities(fullName, out);
+			out.write('"');
+
+			// Handle checked and value according to type
+			if (kind == RenderPlan.CHECKABLE)
+			{
+				if (isChecked)
+				{
+					out.write(" checked=\"checked\"");
+				}
+
+				TagWriter.writeEscapedAttribute(out, "value", value);
+			}
+			else if (kind == RenderPlan.VALUE)
+			{
+				TagWriter.writeEscapedAttribute(out, "value", (value != null) ? value : actionValue);
+			}
+
+			writeCommonAttributes(out, plan, error ? errorClass : cssClass, attributes);
+
+			out.write(" />");
+
+			metrics.recordRender(TagMetrics.INPUT, fullName, pageContext, start);
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+	}
+
+	/**
+	 * Determines whether a boolean attribute is set, which it is if the value
+	 * is true or the attribute name itself.
+	 * @param value the attribute value or null.
+	 * @param name the attribute name.
+	 * @return true if set.
+	 */
+	static boolean isSet(String value, String name)
+	{
+		return (value != null) && (value.equalsIgnoreCase("true") || value.equalsIgnoreCase(name));
+	}
+
+	/**
+	 * Renders an option tag inside a select tag with a label rather than a
+	 * body, so nothing needs to be buffered.
+	 * @param pageContext the page context.
+	 * @param value the value or null to use the label.
+	 * @param label the label, which is escaped.
+	 * @param disabled the disabled or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void labelledOption(PageContext pageContext, String value, String label, String disabled,
+		Object... attributes) throws JspException
+	{
+		option(pageContext, value, label, null, null, null, disabled, AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders an option tag inside a select tag with a localized label looked
+	 * up by key rather than a body, so nothing needs to be buffered.
+	 * @param pageContext the page context.
+	 * @param value the value.
+	 * @param key the key of the label.
+	 * @param bundle the bundle to look the key up in or null to use the text
+	 * provider on the value stack.
+	 * @param disabled the disabled or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void localizedOption(PageContext pageContext, String value, String key, String bundle,
+		String disabled, Object... attributes) throws JspException
+	{
+		option(pageContext, value, null, key, bundle, null, disabled, AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders an option tag inside a select tag.
+	 * @param pageContext the page context.
+	 * @param value the value or null to use the body text.
+	 * @param body the body or null if there isn't one.
+	 * @param disabled the disabled or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void option(PageContext pageContext, String value, BodyContent body, String disabled,
+		Object... attributes) throws JspException
+	{
+		option(pageContext, value, null, null, null, body, disabled, AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders an option tag inside a select tag. A label is escaped and used in
+	 * place of the body, as is the localized label for a key.
+	 * @param pageContext the page context.
+	 * @param value the value or null to use the label or body text, which
+	 * can't be null with a key.
+	 * @param label the label or null to use the key or the body.
+	 * @param key the key of the localized label or null to use the body.
+	 * @param bundle the bundle to look the key up in or null to use the text
+	 * provider on the value stack.
+	 * @param body the body or null if there isn't one.
+	 * @param disabled the disabled or null.
+	 * @param attributes the other attributes.
+	 * @throws JspException if an error occurred.
+	 */
+	@SuppressWarnings("resource")
+	static void option(PageContext pageContext, String value, String label, String key, String bundle,
+		BodyContent body, String disabled, AttributeList attributes) throws JspException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+
+		// Validate we have what we need
+		RenderContext context = RenderContext.get(pageContext);
+		SelectionMatcher selection = context.getSelection();
+
+		if (selection == null)
+		{
+			throw new JspTagException("Can only be used inside select tag");
+		}
+
+		// A localized label is already escaped so it can't be tested against the selection
+		String localizedLabel = null;
+
+		if ((key != null) && (label == null))
+		{
+			if (value == null)
+			{
+				throw new JspTagException("A value is required with a key");
+			}
+
+			localizedLabel = LocalizedLabels.get(pageContext, context, bundle).get(key);
+		}
+
+		// Only copy the body text if it is needed to test the selection
+		boolean selected;
+
+		if (value != null)
+		{
+			selected = selection.matches(value);
+		}
+		else if (label != null)
+		{
+			selected = selection.matches(label);
+		}
+		else
+		{
+			selected = selection.matches((body != null) ? body.getString() : "");
+		}
+
+		// Write out the tag
+		try
+		{
+			JspWriter out = pageContext.getOut();
+
+			out.write("<option");
+
+			if (value != null)
+			{
+				TagWriter.writeEscapedAttribute(out, "value", value);
+			}
+
+			if (selected)
+			{
+				out.write(" selected=\"selected\"");
+			}
+
+			// Handle disabled attribute converting from boolean if needed
+			if (isSet(disabled, "disabled"))
+			{
+				out.write(" disabled=\"disabled\"");
+			}
+
+			// Handle dynamic attributes
+			attributes.write(out);
+
+			out.write('>');
+
+			if (localizedLabel != null)
+			{
+				out.write(localizedLabel);
+			}
+			else if (label != null)
+			{
+				ActionUtils.escapeEntities(label, out);
+			}
+			else if (body != null)
+			{
+				body.writeOut(out);
+			}
+
+			out.write("</option>");
+
+			metrics.recordRender(TagMetrics.OPTION, null, pageContext, start);
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+	}
+
+	/**
+	 * Renders the start of a select tag. The selected value is resolved once
+	 * for all of the options, which must be followed by a call to
+	 * {@link #endSelect(PageContext)}.
+	 * @param pageContext the page context.
+	 * @param name the name.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void startSelect(PageContext pageContext, String name, String disabled, String required,
+		String cssClass, String errorClass, Object... attributes) throws JspException
+	{
+		startSelect(pageContext, RenderPlan.select(null, disabled, required), name, cssClass, errorClass,
+			AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders the start of a select tag.
+	 * @param pageContext the page context.
+	 * @param plan the plan for the disabled and required.
+	 * @param name the name.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attributes.
+	 * @throws JspException if an error occurred.
+	 */
+	@SuppressWarnings("resource")
+	static void startSelect(PageContext pageContext, RenderPlan plan, String name, String cssClass, String errorClass,
+		AttributeList attributes) throws JspException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+
+		// Validate we have what we need
+		if (name == null)
+		{
+			throw new JspTagException("No name attribute supplied");
+		}
+
+		// Get the render context for the request and the name including any nested path
+		RenderContext context = RenderContext.get(pageContext);
+		String fullName = context.getFullName(name);
+
+		// Resolve the selected value once for all of the options
+		context.setSelection(SelectionMatcher.create(context.getActionValue(name)));
+
+		boolean error = (errorClass != null) && context.hasFieldError(fullName);
+
+		// Write out the tag
+		try
+		{
+			JspWriter out = pageContext.getOut();
+
+			plan.writeStart(out);
+			ActionUtils.escapeEntities(fullName, out);
+			out.write('"');
+
+			writeCommonAttributes(out, plan, error ? errorClass : cssClass, attributes);
+
+			out.write('>');
+
+			metrics.recordRender(TagMetrics.SELECT, fullName, pageContext, start);
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+	}
+
+	/**
+	 * Renders a textarea tag.
+	 * @param pageContext the page context.
+	 * @param name the name.
+	 * @param value the value or null.
+	 * @param disabled the disabled or null.
+	 * @param required the required or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attribute names and values or null.
+	 * @throws JspException if an error occurred.
+	 */
+	public static void textarea(PageContext pageContext, String name, String value, String disabled, String required,
+		String cssClass, String errorClass, Object... attributes) throws JspException
+	{
+		textarea(pageContext, RenderPlan.textarea(null, disabled, required), name, value, null, cssClass, errorClass,
+			AttributeList.of(attributes));
+	}
+
+	/**
+	 * Renders a textarea tag.
+	 * @param pageContext the page context.
+	 * @param plan the plan for the disabled and required.
+	 * @param name the name.
+	 * @param value the value or null.
+	 * @param format the pattern to format the property value with or null.
+	 * @param cssClass the class or null.
+	 * @param errorClass the error class or null.
+	 * @param attributes the other attributes.
+	 * @throws JspException if an error occurred.
+	 */
+	@SuppressWarnings("resource")
+	static void textarea(PageContext pageContext, RenderPlan plan, String name, String value, String format,
+		String cssClass, String errorClass, AttributeList attributes) throws JspException
+	{
+		TagMetrics metrics = TagMetrics.getInstance();
+		long start = metrics.start();
+
+		// Validate we have what we need
+		if (name == null)
+		{
+			throw new JspTagException("No name attribute supplied");
+		}
+
+		// Get the render context for the request and the name including any nested path
+		RenderContext context = RenderContext.get(pageContext);
+		String fullName = context.getFullName(name);
+
+		// Get the content and error state before anything is written, leaving large values to be streamed
+		Object content = value;
+
+		if (content == null)
+		{
+			content = context.getActionValue(name);
+
+			if (format != null)
+			{
+				content = ValueFormatter.format(content, format, context.getLocale(pageContext));
+			}
+		}
+
+		boolean error = (errorClass != null) && context.hasFieldError(fullName);
+
+		// Write out the tag, with a file opened first so a missing one doesn't leave half a tag on the page
+		try (Reader reader = getReader(content))
+		{
+			JspWriter out = pageContext.getOut();
+
+			plan.writeStart(out);
+			ActionUtils.escapeEntities(fullName, out);
+			out.write('"');
+
+			writeCommonAttributes(out, plan, error ? errorClass : cssClass, attributes);
+
+			out.write('>');
+
+			if (reader != null)
+			{
+				Escaper.escape(reader, out);
+			}
+			else if (content instanceof CharSequence)
+			{
+				Escaper.escape((CharSequence)content, out);
+			}
+			else if (content != null)
+			{
+				Escaper.escape(content.toString(), out);
+			}
+
+			out.write("</textarea>");
+
+			metrics.recordRender(TagMetrics.TEXTAREA, fullName, pageContext, start);
+		}
+		catch (IOException e)
+		{
+			throw new JspTagException(e);
+		}
+	}
+
+	/**
+	 * Writes out the attributes shared by the form element tags.
+	 * @param out the writer.
+	 * @param plan the plan with the required and disabled attributes.
+	 * @param cssClass the class to use, which is the error class if there is an
+	 * error, or null.
+	 * @param attributes the other attributes.
+	 * @throws IOException if an error occurred writing.
+	 */
+	private static void writeCommonAttributes(Writer out, RenderPlan plan, String cssClass, AttributeList attributes)
+		throws IOException
+	{
+		// Required and disabled were converted from booleans when the plan was built
+		plan.writeFlags(out);
+
+		if (cssClass != null)
+		{
+			TagWriter.writeEscapedAttribute(out, "class", cssClass);
+		}
+
+		// Handle dynamic attributes
+		attributes.write(out);
+	}
+
+	/**
+	 * Gets a reader for the content of a textarea that is streamed from one.
+	 * A file is opened and decoded as UTF-8 from a channel as it is read.
+	 * @param content the content or null.
+	 * @return the reader, which is closed once the content is written, or
+	 * null if the content isn't a reader or a file.
+	 * @throws IOException if the file couldn't be opened.
+	 */
+	private static Reader getReader(Object content) throws IOException
+	{
+		if (content instanceof Reader)
+		{
+			return (Reader)content;
+		}
+
+		if (!(content instanceof Path))
+		{
+			return null;
+		}
+
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		return Channels.newReader(FileChannel.open((Path)content, StandardOpenOption.READ), decoder,
+			Escaper.CHUNK_SIZE);
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes attributes straight to the output without building the tag up in an
+ * intermediate buffer first.
+ */
+final class TagWriter
+{
+	/** Private default constructor to prevent external instantiation. */
+	private TagWriter()
+	{
+	}
+
+	/**
+	 * Writes an attribute escaping any entities in its value.
+	 * @param out the writer.
+	 * @param name the attribute name.
+	 * @param value the attribute value.
+	 * @throws IOException if an error occurred writing.
+	 */
+	static void writeEscapedAttribute(Writer out, String name, String value) throws IOException
+	{
+		out.write(' ');
+		out.write(name);
+		out.write("=\"");
+		ActionUtils.escapeEntities(value, out);
+		out.write('"');
+	}
+}
@@ -19,19 +19,10 @@
 
 package com.jiglu.mstaglib;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-
 import javax.servlet.jsp.JspException;
-import javax.servlet.jsp.JspTagException;
 import javax.servlet.jsp.tagext.BodyTagSupport;
 import javax.servlet.jsp.tagext.DynamicAttributes;
 
-import com.opensymphony.xwork2.ognl.OgnlValueStack;
-
 /**
  * Creates a &lt;textarea&gt; HTML tag populated from a Struts 2 action.
  */
@@ -41,6 +32,8 @@ public final class Textarea extends BodyTagSupport implements DynamicAttributes
 
 	private String m_value;
 
+	private String m_format;
+
 	private String m_disabled;
 
 	private String m_required;
@@ -49,85 +42,45 @@ public final class Textarea extends BodyTagSupport implements DynamicAttributes
 
 	private String m_errorClass;
 
-	private final Map<String, Object> m_dynamicAttributes = new HashMap<>();
+	private final AttributeList m_dynamicAttributes = new AttributeList();
+
+	/** The plan from the last use, kept while the static attributes stay the same. */
+	private RenderPlan m_plan;
 
 	/** Serial version UID */
 	private static final long serialVersionUID = 2987736075894106039L;
 
-	@SuppressWarnings("resource")
 	@Override
 	public int doEndTag() throws JspException
 	{
-		// Validate we have what we need
-		if (m_name == null)
-		{
-			throw new JspTagException("No name attribute supplied");
-		}
-
-		// Get the value stack
-		OgnlValueStack valueStack = ActionUtils.getValueStack(pageContext);
-
-		// Build up the tag
-		StringBuilder output = new StringBuilder(128);
-
-		output.append("<textarea name=\"").append(ActionUtils.escapeEntities(m_name)).append('"');
-
-		// Handle required attribute converting from boolean if needed
-		if ((m_required != null) && (m_required.equalsIgnoreCase("true") || m_required.equalsIgnoreCase("required")))
-		{
-			output.append(" required=\"required\"");
-		}
-
-		// Handle disabled attribute converting from boolean if needed
-		if ((m_disabled != null) && (m_disabled.equalsIgnoreCase("true") || m_disabled.equalsIgnoreCase("disabled")))
-		{
-			output.append(" disabled=\"disabled\"");
-		}
-
-		// If have an error then swap to the error class
-		Map<String, List<String>> fieldErrors = ActionUtils.getFieldErrors(valueStack);
-
-		if ((m_errorClass != null) && (fieldErrors != null) && fieldErrors.containsKey(m_name))
-		{
-			output.append(" class=\"").append(m_errorClass).append('"');
-		}
-		else if (m_class != null)
-		{
-			output.append(" class=\"").append(m_class).append('"');
-		}
-
-		// Handle dynamic attributes
-		for (Entry<String, Object> entry : m_dynamicAttributes.entrySet())
-		{
-			output.append(' ').append(entry.getKey()).append("=\"").append(entry.getValue()).append('"');
-		}
+		m_plan = RenderPlan.textarea(m_plan, m_disabled, m_required);
 
-		output.append('>');
+		TagRenderer.textarea(pageContext, m_plan, m_name, m_value, m_format, m_class, m_errorClass,
+			m_dynamicAttributes);
 
-		if (m_value != null)
-		{
-			output.append(m_value);
-		}
-		else
-		{
-			output.append(ActionUtils.escapeEntities(ActionUtils.getActionValueString(valueStack, m_name)));
-		}
-
-		output.append("</textarea>");
-
-		// Write it out
-		try
-		{
-			pageContext.getOut().print(output);
-		}
-		catch (IOException e)
-		{
-			throw new JspTagException(e);
-		}
+		// Clear the state for this use so the handler can be reused
+		m_class = null;
+		m_dynamicAttributes.clear();
 
 		return EVAL_PAGE;
 	}
 
+	@Override
+	public void release()
+	{
+		super.release();
+
+		m_name = null;
+		m_value = null;
+		m_format = null;
+		m_disabled = null;
+		m_required = null;
+		m_class = null;
+		m_errorClass = null;
+		m_dynamicAttributes.clear();
+		m_plan = null;
+	}
+
 	/**
 	 * Sets the disabled.
 	 * @param disabled the disabled.
@@ -159,6 +112,15 @@ public final class Textarea extends BodyTagSupport implements DynamicAttributes
 		m_errorClass = errorClass;
 	}
 
+	/**
+	 * Sets the format.
+	 * @param format the format.
+	 */
+	public void setFormat(String format)
+	{
+		m_format = format;
+	}
+
 	/**
 	 * Sets the name.
 	 * @param name the name.
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalField;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.jsp.JspTagException;
+
+/**
+ * Formats property values with a pattern. Dates and times, whether
+ * <code>java.time</code> values, dates or calendars, are formatted with a
+ * {@link DateTimeFormatter} pattern and numbers with a {@link DecimalFormat}
+ * pattern. Date time formatters are immutable so one is shared for each
+ * pattern and locale, but decimal formats aren't thread safe so a small pool
+ * of them is kept instead. Any other value, including a string that couldn't
+ * be converted when the form was submitted, is left as it is.
+ */
+final class ValueFormatter
+{
+	/** The maximum number of locales patterns are held for, as the locale comes from the request. */
+	private static final int MAXIMUM_LOCALES = 64;
+
+	/** The maximum number of patterns held for each locale. */
+	private static final int MAXIMUM_PATTERNS = 256;
+
+	/** The maximum number of decimal formats pooled for each pattern and locale. */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+	/** The date time formatters for each locale and pattern. */
+	private static final ConcurrentMap<Locale, ConcurrentMap<String, DateTimeFormatter>> DATE_TIME_FORMATTERS =
+		new ConcurrentHashMap<>();
+
+	/** The pools of decimal formats for each locale and pattern. */
+	private static final ConcurrentMap<Locale, ConcurrentMap<String, DecimalFormatPool>> DECIMAL_FORMATS =
+		new ConcurrentHashMap<>();
+
+	/** Private default constructor to prevent external instantiation. */
+	private ValueFormatter()
+	{
+	}
+
+	/**
+	 * Formats a value with a pattern.
+	 * @param value the value or null.
+	 * @param pattern the pattern.
+	 * @param locale the locale.
+	 * @return the formatted string, or the value itself if it isn't a date,
+	 * time or number.
+	 * @throws JspTagException if the pattern isn't valid for the value.
+	 */
+	static Object format(Object value, String pattern, Locale locale) throws JspTagException
+	{
+		try
+		{
+			if (value instanceof TemporalAccessor)
+			{
+				return getDateTimeFormatter(pattern, locale).format((TemporalAccessor)value);
+			}
+
+			if ((value instanceof Date) || (value instanceof Calendar))
+			{
+				return getDateTimeFormatter(pattern, locale).format(toDateTime(value));
+			}
+
+			if (value instanceof Number)
+			{
+				return getDecimalFormatPool(pattern, locale).format(value);
+			}
+		}
+		catch (IllegalArgumentException | DateTimeException e)
+		{
+			throw new JspTagException("Unable to format " + value.getClass().getName() + " with: " + pattern, e);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Formats a date or time with a pattern if it has all of the fields the
+	 * pattern needs, such as for the value of a date input. Dates and
+	 * calendars always have them.
+	 * @param value the value or null.
+	 * @param pattern the pattern.
+	 * @param fields the fields the pattern needs.
+	 * @return the formatted string, or the value itself if it isn't a date or
+	 * time with the fields needed.
+	 */
+	static Object formatTemporal(Object value, String pattern, TemporalField[] fields)
+	{
+		if ((value instanceof Date) || (value instanceof Calendar))
+		{
+			return getDateTimeFormatter(pattern, Locale.ROOT).format(toDateTime(value));
+		}
+
+		if (!(value instanceof TemporalAccessor))
+		{
+			return value;
+		}
+
+		TemporalAccessor temporal = (TemporalAccessor)value;
+
+		for (TemporalField field : fields)
+		{
+			if (!temporal.isSupported(field))
+			{
+				return value;
+			}
+		}
+
+		return getDateTimeFormatter(pattern, Locale.ROOT).format(temporal);
+	}
+
+	/**
+	 * Converts a date or calendar to a date time in its time zone, or the
+	 * default time zone for a date.
+	 * @param value the date or calendar.
+	 * @return the date time.
+	 */
+	private static ZonedDateTime toDateTime(Object value)
+	{
+		if (value instanceof Calendar)
+		{
+			Calendar calendar = (Calendar)value;
+
+			return ZonedDateTime.ofInstant(calendar.toInstant(), calendar.getTimeZone().toZoneId());
+		}
+
+		// Dates from java.sql don't support toInstant so go through the milliseconds
+		return ZonedDateTime.ofInstant(Instant.ofEpochMilli(((Date)value).getTime()), ZoneId.systemDefault());
+	}
+
+	/**
+	 * Gets the date time formatter for a pattern and locale, creating it if
+	 * needed.
+	 * @param pattern the pattern.
+	 * @param locale the locale.
+	 * @return the formatter.
+	 */
+	private static DateTimeFormatter getDateTimeFormatter(String pattern, Locale locale)
+	{
+		ConcurrentMap<String, DateTimeFormatter> formatters = getPatterns(DATE_TIME_FORMATTERS, locale);
+		DateTimeFormatter formatter = formatters.get(pattern);
+
+		if (formatter == null)
+		{
+			formatter = DateTimeFormatter.ofPattern(pattern, locale);
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (formatters.size() < MAXIMUM_PATTERNS)
+			{
+				formatters.putIfAbsent(pattern, formatter);
+			}
+		}
+
+		return formatter;
+	}
+
+	/**
+	 * Gets the pool of decimal formats for a pattern and locale, creating it
+	 * if needed.
+	 * @param pattern the pattern.
+	 * @param locale the locale.
+	 * @return the pool.
+	 */
+	private static DecimalFormatPool getDecimalFormatPool(String pattern, Locale locale)
+	{
+		ConcurrentMap<String, DecimalFormatPool> pools = getPatterns(DECIMAL_FORMATS, locale);
+		DecimalFormatPool pool = pools.get(pattern);
+
+		if (pool == null)
+		{
+			pool = new DecimalFormatPool(new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(locale)));
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (pools.size() < MAXIMUM_PATTERNS)
+			{
+				DecimalFormatPool existing = pools.putIfAbsent(pattern, pool);
+
+				if (existing != null)
+				{
+					pool = existing;
+				}
+			}
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Gets the map of patterns held for a locale, adding one if needed. Once
+	 * the maximum number of locales is held a new map that isn't kept is
+	 * returned for any other locale, so its formatters are built for each use.
+	 * @param <T> the type of formatter.
+	 * @param cache the maps of patterns for each locale.
+	 * @param locale the locale.
+	 * @return the map of patterns.
+	 */
+	private static <T> ConcurrentMap<String, T> getPatterns(ConcurrentMap<Locale, ConcurrentMap<String, T>> cache,
+		Locale locale)
+	{
+		ConcurrentMap<String, T> patterns = cache.get(locale);
+
+		if (patterns == null)
+		{
+			patterns = new ConcurrentHashMap<>();
+
+			// The size check isn't atomic so the cache may overshoot by a few entries under contention
+			if (cache.size() < MAXIMUM_LOCALES)
+			{
+				ConcurrentMap<String, T> existing = cache.putIfAbsent(locale, patterns);
+
+				if (existing != null)
+				{
+					patterns = existing;
+				}
+			}
+		}
+
+		return patterns;
+	}
+
+	/**
+	 * A pool of copies of a decimal format, so each is only used by one
+	 * thread at a time.
+	 */
+	private static final class DecimalFormatPool
+	{
+		private final DecimalFormat m_prototype;
+
+		private final BlockingQueue<DecimalFormat> m_formats = new ArrayBlockingQueue<>(POOL_SIZE);
+
+		/**
+		 * Creates a new pool.
+		 * @param prototype the format to copy, which is never used itself.
+		 */
+		DecimalFormatPool(DecimalFormat prototype)
+		{
+			m_prototype = prototype;
+		}
+
+		/**
+		 * Formats a number with a format from the pool, copying the prototype
+		 * if they are all in use.
+		 * @param number the number.
+		 * @return the formatted number.
+		 */
+		String format(Object number)
+		{
+			DecimalFormat format = m_formats.poll();
+
+			if (format == null)
+			{
+				format = (DecimalFormat)m_prototype.clone();
+			}
+
+			String formatted = format.format(number);
+
+			// If the pool is already full the copy is just dropped
+			m_formats.offer(format);
+
+			return formatted;
+		}
+	}
+}
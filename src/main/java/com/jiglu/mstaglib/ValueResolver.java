@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib;
+
+import java.util.Locale;
+
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+/**
+ * Resolves the values of the properties the tags are bound to, and whether
+ * they have field errors. Each resolver is asked in turn for the state of a
+ * page until one can resolve values for it. The built in resolvers are
+ * {@link OgnlValueResolver} for pages rendered by Struts and
+ * {@link ELValueResolver} for any other page, which is only used when it is
+ * listed. Further resolvers are found through {@link java.util.ServiceLoader}
+ * and asked first, or the resolvers to use can be listed in order by class
+ * name in the <code>com.jiglu.mstaglib.valueResolvers</code> context
+ * parameter.
+ * <p>
+ * The state returned for a page is kept for the request, and values resolved
+ * for a tag are reused by later tags for as long as the resolver returns the
+ * same state.
+ * @param <S> the type of the state values are resolved from.
+ */
+public interface ValueResolver<S>
+{
+	/**
+	 * Gets the locale to format values for. The default returns null so the
+	 * locale of the request is used.
+	 * @param state the state.
+	 * @return the locale or null.
+	 */
+	default Locale getLocale(S state)
+	{
+		return null;
+	}
+
+	/**
+	 * Gets the state values are resolved from for a page.
+	 * @param pageContext the page context.
+	 * @param previous the state returned for the previous tag of the request,
+	 * which should be returned again if nothing it depends on has changed, or
+	 * null if there isn't one.
+	 * @return the state or null if this resolver can't resolve values for the
+	 * page.
+	 * @throws JspTagException if an error occurred.
+	 */
+	S getState(PageContext pageContext, S previous) throws JspTagException;
+
+	/**
+	 * Gets the value of a property for the page.
+	 * @param state the state.
+	 * @param name the name of the property.
+	 * @return the value.
+	 * @throws JspTagException if the property couldn't be resolved.
+	 */
+	Object getValue(S state, String name) throws JspTagException;
+
+	/**
+	 * Gets the value of a property of a bean.
+	 * @param state the state.
+	 * @param bean the bean.
+	 * @param name the name of the property relative to the bean.
+	 * @return the value.
+	 * @throws JspTagException if the property couldn't be resolved.
+	 */
+	Object getValue(S state, Object bean, String name) throws JspTagException;
+
+	/**
+	 * Determines whether there is a field error for a property.
+	 * @param state the state.
+	 * @param name the full name of the property.
+	 * @return true if there is a field error.
+	 * @throws JspTagException if an error occurred.
+	 */
+	boolean hasFieldError(S state, String name) throws JspTagException;
+
+	/**
+	 * Prepares to resolve a property name found in a page before it is first
+	 * used, for example by checking and parsing it. The default does nothing.
+	 * @param name the name of the property.
+	 * @throws JspTagException if the name isn't valid.
+	 */
+	default void prepare(String name) throws JspTagException
+	{
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import javax.servlet.ServletContext;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+/**
+ * Finds the value resolvers for a web application. Unless they're listed in
+ * the <code>com.jiglu.mstaglib.valueResolvers</code> context parameter these
+ * are the resolvers found through {@link ServiceLoader} followed by the built
+ * in OGNL resolver. The EL resolver is only used when it is listed, so that a
+ * page missing its Struts value stack fails rather than quietly rendering
+ * empty values. The list is built once and kept as a context attribute.
+ */
+final class ValueResolvers
+{
+	/** The context parameter listing the resolvers by class name. */
+	static final String PARAMETER = "com.jiglu.mstaglib.valueResolvers";
+
+	/** The context attribute the resolvers are kept under. */
+	private static final String ATTRIBUTE = ValueResolvers.class.getName();
+
+	/** The resolvers used without a servlet context. */
+	private static final List<ValueResolver<Object>> DEFAULTS = load(ValueResolvers.class.getClassLoader());
+
+	/** Private default constructor to prevent external instantiation. */
+	private ValueResolvers()
+	{
+	}
+
+	/**
+	 * Gets the resolvers for the web application a page is in.
+	 * @param pageContext the page context.
+	 * @return the resolvers in the order they should be asked.
+	 * @throws JspTagException if a resolver couldn't be created.
+	 */
+	static List<ValueResolver<Object>> get(PageContext pageContext) throws JspTagException
+	{
+		return get(pageContext.getServletContext());
+	}
+
+	/**
+	 * Gets the resolvers for a web application.
+	 * @param servletContext the servlet context or null if there isn't one.
+	 * @return the resolvers in the order they should be asked.
+	 * @throws JspTagException if a resolver couldn't be created.
+	 */
+	@SuppressWarnings("unchecked")
+	static List<ValueResolver<Object>> get(ServletContext servletContext) throws JspTagException
+	{
+		if (servletContext == null)
+		{
+			return DEFAULTS;
+		}
+
+		List<ValueResolver<Object>> resolvers = (List<ValueResolver<Object>>)servletContext.getAttribute(ATTRIBUTE);
+
+		if (resolvers == null)
+		{
+			// Two requests may both build the list but either result is the same
+			resolvers = create(servletContext.getInitParameter(PARAMETER));
+
+			servletContext.setAttribute(ATTRIBUTE, resolvers);
+		}
+
+		return resolvers;
+	}
+
+	/**
+	 * Gets the resolvers used without a servlet context, which are the
+	 * resolvers registered as services with the tag library followed by the
+	 * built in OGNL resolver.
+	 * @return the resolvers.
+	 */
+	static List<ValueResolver<Object>> getDefaults()
+	{
+		return DEFAULTS;
+	}
+
+	/**
+	 * Creates the resolvers listed in the context parameter, or loads the
+	 * default resolvers if there isn't one.
+	 * @param classNames the comma separated class names or null.
+	 * @return the resolvers.
+	 * @throws JspTagException if a resolver couldn't be created.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<ValueResolver<Object>> create(String classNames) throws JspTagException
+	{
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+		if ((classNames == null) || classNames.isBlank())
+		{
+			return load(classLoader);
+		}
+
+		List<ValueResolver<Object>> resolvers = new ArrayList<>();
+
+		for (String className : classNames.split(","))
+		{
+			className = className.trim();
+
+			if (className.isEmpty())
+			{
+				continue;
+			}
+
+			Object resolver;
+
+			try
+			{
+				resolver = Class.forName(className, true, classLoader).getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException e)
+			{
+				throw new JspTagException("Unable to create the value resolver: " + className, e);
+			}
+
+			if (!(resolver instanceof ValueResolver))
+			{
+				throw new JspTagException("Not a value resolver: " + className);
+			}
+
+			resolvers.add((ValueResolver<Object>)resolver);
+		}
+
+		return Collections.unmodifiableList(resolvers);
+	}
+
+	/**
+	 * Loads the resolvers registered as services followed by the built in
+	 * OGNL resolver.
+	 * @param classLoader the class loader to find services with.
+	 * @return the resolvers.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static List<ValueResolver<Object>> load(ClassLoader classLoader)
+	{
+		List<ValueResolver<Object>> resolvers = new ArrayList<>();
+
+		for (ValueResolver resolver : ServiceLoader.load(ValueResolver.class, classLoader))
+		{
+			resolvers.add(resolver);
+		}
+
+		resolvers.add((ValueResolver)new OgnlValueResolver());
+
+		return Collections.unmodifiableList(resolvers);
+	}
+}
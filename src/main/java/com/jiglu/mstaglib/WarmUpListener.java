@@ -0,0 +1,417 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+
+package com.jiglu.mstaglib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.jsp.JspTagException;
+
+/**
+ * Warms up the tag library when a web application starts, so the first
+ * requests don't pay for checking and parsing property names. The pages and
+ * tag files of the application are scanned on background threads for tags
+ * from the library with literal property names, which are checked against
+ * the accepted pattern and passed to each {@link ValueResolver} to prepare.
+ * The tags are found by the prefixes a page declares for the library. Pages
+ * that don't declare it, such as fragments included in other pages, are
+ * scanned last for the prefixes declared by the rest of the application.
+ * Invalid names and the time the warm-up took are written to the context log.
+ * <p>
+ * It is declared in the TLD so it runs without any configuration. Setting the
+ * <code>com.jiglu.mstaglib.warmUp</code> context parameter to false turns it
+ * off and <code>com.jiglu.mstaglib.warmUpThreads</code> sets the number of
+ * threads, which defaults to the number of processors up to four.
+ */
+public final class WarmUpListener implements ServletContextListener
+{
+	/** The context parameter to turn the warm-up off. */
+	private static final String WARM_UP = "com.jiglu.mstaglib.warmUp";
+
+	/** The context parameter for the number of threads. */
+	private static final String WARM_UP_THREADS = "com.jiglu.mstaglib.warmUpThreads";
+
+	/** The URI of the tag library. */
+	private static final String URI = "http://www.jiglu.com/taglibs/mstaglib";
+
+	/** Taglib directives and XML namespace declarations. */
+	private static final Pattern TAGLIB = Pattern.compile(
+		"<%@\\s*taglib\\b([^%]*)%>|xmlns:([\\w.-]+)\\s*=\\s*[\"']" + Pattern.quote(URI) + "[\"']");
+
+	/** The prefix and URI attributes of a taglib directive. */
+	private static final Pattern DIRECTIVE_ATTRIBUTE = Pattern.compile("\\b(prefix|uri)\\s*=\\s*[\"']([^\"']*)[\"']");
+
+	/** The start of the tags with property names. */
+	private static final Pattern TAG =
+		Pattern.compile("<([\\w.-]+):(input|textarea|select|options|nested|checkboxes|radios)\\b([^>]*)>");
+
+	/** The attributes holding property names. */
+	private static final Pattern NAME_ATTRIBUTE =
+		Pattern.compile("\\b(name|path|itemValue|itemLabel)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+	private ExecutorService m_executor;
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event)
+	{
+		if (m_executor != null)
+		{
+			m_executor.shutdownNow();
+			m_executor = null;
+		}
+	}
+
+	@Override
+	public void contextInitialized(ServletContextEvent event)
+	{
+		ServletContext servletContext = event.getServletContext();
+
+		if ("false".equalsIgnoreCase(servletContext.getInitParameter(WARM_UP)))
+		{
+			return;
+		}
+
+		List<ValueResolver<Object>> resolvers;
+
+		try
+		{
+			// Find the resolvers now while the context class loader is the application's
+			resolvers = ValueResolvers.get(servletContext);
+		}
+		catch (JspTagException e)
+		{
+			servletContext.log("Unable to warm up the tag library", e);
+
+			return;
+		}
+
+		int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+		String parameter = servletContext.getInitParameter(WARM_UP_THREADS);
+
+		if ((parameter != null) && !parameter.isEmpty())
+		{
+			try
+			{
+				threads = Integer.parseInt(parameter.trim());
+			}
+			catch (NumberFormatException e)
+			{
+				servletContext.log("Invalid " + WARM_UP_THREADS + " context parameter: " + parameter, e);
+			}
+		}
+
+		if (threads <= 0)
+		{
+			return;
+		}
+
+		AtomicInteger count = new AtomicInteger();
+
+		m_executor = Executors.newFixedThreadPool(threads, runnable ->
+		{
+			Thread thread = new Thread(runnable, "mstaglib-warm-up-" + count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		new WarmUp(servletContext, resolvers, m_executor).start();
+	}
+
+	/**
+	 * A warm-up of one web application.
+	 */
+	private static final class WarmUp
+	{
+		private final ServletContext m_servletContext;
+
+		private final List<ValueResolver<Object>> m_resolvers;
+
+		private final ExecutorService m_executor;
+
+		private final Set<String> m_names = ConcurrentHashMap.newKeySet();
+
+		private final Set<String> m_prefixes = ConcurrentHashMap.newKeySet();
+
+		private final ConcurrentLinkedQueue<String> m_fragments = new ConcurrentLinkedQueue<>();
+
+		private final AtomicInteger m_invalidNames = new AtomicInteger();
+
+		private final long m_start = System.nanoTime();
+
+		/**
+		 * Creates a new warm-up.
+		 * @param servletContext the servlet context.
+		 * @param resolvers the resolvers to prepare the names with.
+		 * @param executor the executor to scan the pages with.
+		 */
+		WarmUp(ServletContext servletContext, List<ValueResolver<Object>> resolvers, ExecutorService executor)
+		{
+			m_servletContext = servletContext;
+			m_resolvers = resolvers;
+			m_executor = executor;
+		}
+
+		/**
+		 * Starts the warm-up, finding the pages and then scanning each of them
+		 * on the executor, followed by the pages that don't declare the tag
+		 * library.
+		 */
+		void start()
+		{
+			CompletableFuture.supplyAsync(() ->
+			{
+				List<String> pages = new ArrayList<>();
+
+				findPages("/", pages);
+
+				return pages;
+			}, m_executor).thenCompose(pages ->
+			{
+				return scan(pages, false).thenApply(result -> pages.size());
+			}).thenCompose(pages ->
+			{
+				// The fragments can only be scanned once every prefix has been found
+				return scan(new ArrayList<>(m_fragments), true).thenApply(result -> pages);
+			}).whenComplete((pages, t) ->
+			{
+				if (t != null)
+				{
+					m_servletContext.log("Unable to warm up the tag library", t);
+				}
+				else
+				{
+					m_servletContext.log("Warmed up the tag library with " + m_names.size() + " property names (" +
+						m_invalidNames.get() + " invalid) from " + pages + " pages in " +
+						((System.nanoTime() - m_start) / 1000000) + " ms");
+				}
+
+				m_executor.shutdown();
+			});
+		}
+
+		/**
+		 * Adds the prefix of a taglib directive if it is for this tag library.
+		 * @param attributes the attributes of the directive.
+		 * @param prefixes the prefixes to add to.
+		 */
+		private static void addPrefix(String attributes, Set<String> prefixes)
+		{
+			Matcher attribute = DIRECTIVE_ATTRIBUTE.matcher(attributes);
+			String prefix = null;
+			boolean library = false;
+
+			while (attribute.find())
+			{
+				if (attribute.group(1).equals("prefix"))
+				{
+					prefix = attribute.group(2);
+				}
+				else
+				{
+					library = attribute.group(2).equals(URI);
+				}
+			}
+
+			if (library && (prefix != null))
+			{
+				prefixes.add(prefix);
+			}
+		}
+
+		/**
+		 * Finds the pages and tag files under a directory.
+		 * @param directory the directory path ending with a slash.
+		 * @param pages the list to add the page paths to.
+		 */
+		private void findPages(String directory, List<String> pages)
+		{
+			Set<String> paths = m_servletContext.getResourcePaths(directory);
+
+			if (paths == null)
+			{
+				return;
+			}
+
+			for (String path : paths)
+			{
+				if (path.endsWith("/"))
+				{
+					// Skip the directories that can't hold pages
+					if (!path.equals("/META-INF/") && !path.equals("/WEB-INF/classes/") &&
+						!path.equals("/WEB-INF/lib/"))
+					{
+						findPages(path, pages);
+					}
+				}
+				else if (path.endsWith(".jsp") || path.endsWith(".jspx") || path.endsWith(".jspf") ||
+					path.endsWith(".tag") || path.endsWith(".tagx") || path.endsWith(".tagf"))
+				{
+					pages.add(path);
+				}
+			}
+		}
+
+		/**
+		 * Prepares a property name with each of the resolvers.
+		 * @param name the property name.
+		 * @param page the page the name was found in.
+		 */
+		private void prepare(String name, String page)
+		{
+			try
+			{
+				for (ValueResolver<Object> resolver : m_resolvers)
+				{
+					resolver.prepare(name);
+				}
+			}
+			catch (JspTagException e)
+			{
+				m_invalidNames.incrementAndGet();
+				m_servletContext.log("Invalid property name in " + page + ": " + name);
+			}
+		}
+
+		/**
+		 * Scans pages on the executor.
+		 * @param pages the page paths.
+		 * @param fragments true if the pages don't declare the tag library.
+		 * @return the future completed when all the pages have been scanned.
+		 */
+		private CompletableFuture<Void> scan(List<String> pages, boolean fragments)
+		{
+			CompletableFuture<?>[] scans = new CompletableFuture<?>[pages.size()];
+
+			for (int i = 0; i < scans.length; i++)
+			{
+				String page = pages.get(i);
+
+				scans[i] = CompletableFuture.runAsync(() -> scan(page, fragments), m_executor);
+			}
+
+			return CompletableFuture.allOf(scans);
+		}
+
+		/**
+		 * Scans a page for tags from the library with literal property names
+		 * and prepares any names not already prepared. A page that doesn't
+		 * declare the tag library is kept to be scanned as a fragment once the
+		 * other pages have been scanned.
+		 * @param page the page path.
+		 * @param fragment true to scan for the prefixes declared by the other
+		 * pages.
+		 */
+		private void scan(String page, boolean fragment)
+		{
+			String source;
+
+			try (InputStream in = m_servletContext.getResourceAsStream(page))
+			{
+				if (in == null)
+				{
+					return;
+				}
+
+				// Property names are ASCII so the page encoding doesn't matter
+				source = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+			}
+			catch (IOException e)
+			{
+				m_servletContext.log("Unable to read " + page + " to warm up the tag library", e);
+
+				return;
+			}
+
+			Set<String> prefixes = new HashSet<>();
+			Matcher taglib = TAGLIB.matcher(source);
+
+			while (taglib.find())
+			{
+				if (taglib.group(2) != null)
+				{
+					prefixes.add(taglib.group(2));
+				}
+				else
+				{
+					addPrefix(taglib.group(1), prefixes);
+				}
+			}
+
+			if (!prefixes.isEmpty())
+			{
+				m_prefixes.addAll(prefixes);
+			}
+			else if (fragment)
+			{
+				prefixes = m_prefixes;
+			}
+			else
+			{
+				// Read it again later rather than keep its source while the other pages are scanned
+				m_fragments.add(page);
+
+				return;
+			}
+
+			Matcher tag = TAG.matcher(source);
+
+			while (tag.find())
+			{
+				if (!prefixes.contains(tag.group(1)))
+				{
+					continue;
+				}
+
+				Matcher attribute = NAME_ATTRIBUTE.matcher(tag.group(3));
+
+				while (attribute.find())
+				{
+					String name = (attribute.group(2) != null) ? attribute.group(2) : attribute.group(3);
+
+					// Only literal names can be known before the page runs
+					if (!name.isEmpty() && (name.indexOf('$') < 0) && (name.indexOf('#') < 0) &&
+						(name.indexOf('%') < 0) && m_names.add(name))
+					{
+						prepare(name, page);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.jasper;
+
+import java.util.List;
+
+import org.apache.jasper.compiler.tagplugin.TagPlugin;
+import org.apache.jasper.compiler.tagplugin.TagPluginContext;
+
+/**
+ * Replaces the handler for the option tag with a call to render it directly. The
+ * body is still buffered as the selection may be tested against it, unless
+ * there is a label or a key to use instead.
+ */
+public final class OptionPlugin implements TagPlugin
+{
+	@Override
+	public void doTag(TagPluginContext ctxt)
+	{
+		// Fall back to the tag handler if the attributes can't be determined
+		List<String> attributes = PluginSupport.getDynamicAttributes(ctxt);
+
+		if (attributes == null)
+		{
+			ctxt.dontUseTagPlugin();
+
+			return;
+		}
+
+		// A label replaces the body so it is never evaluated
+		if (ctxt.isAttributeSpecified("label"))
+		{
+			PluginSupport.generateCall(ctxt, "labelledOption");
+			PluginSupport.generateArguments(ctxt, "value", "label", "disabled");
+			PluginSupport.generateAttributes(ctxt, attributes);
+			ctxt.generateJavaSource(");");
+
+			return;
+		}
+
+		// So does a key, with the label looked up when the option is rendered
+		if (ctxt.isAttributeSpecified("key"))
+		{
+			PluginSupport.generateCall(ctxt, "localizedOption");
+			PluginSupport.generateArguments(ctxt, "value", "key", "bundle", "disabled");
+			PluginSupport.generateAttributes(ctxt, attributes);
+			ctxt.generateJavaSource(");");
+
+			return;
+		}
+
+		String pageContext = PluginSupport.getPageContext(ctxt);
+		String body = ctxt.getTemporaryVariableName();
+
+		ctxt.generateJavaSource("out = " + pageContext + ".pushBody();");
+		ctxt.generateBody();
+		ctxt.generateJavaSource(
+			"javax.servlet.jsp.tagext.BodyContent " + body + " = (javax.servlet.jsp.tagext.BodyContent)out;");
+		ctxt.generateJavaSource("out = " + pageContext + ".popBody();");
+
+		PluginSupport.generateCall(ctxt, "option");
+		PluginSupport.generateArguments(ctxt, "value");
+		ctxt.generateJavaSource(", " + body);
+		PluginSupport.generateArguments(ctxt, "disabled");
+		PluginSupport.generateAttributes(ctxt, attributes);
+		ctxt.generateJavaSource(");");
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.jasper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jasper.compiler.tagplugin.TagPluginContext;
+
+/**
+ * Helpers for generating the code for the tag plugins.
+ */
+final class PluginSupport
+{
+	/** Private default constructor to prevent external instantiation. */
+	private PluginSupport()
+	{
+	}
+
+	/**
+	 * Generates the arguments for attributes of the tag, each preceded by a
+	 * comma. An attribute that isn't specified is passed as null.
+	 * @param ctxt the plugin context.
+	 * @param names the attribute names.
+	 */
+	static void generateArguments(TagPluginContext ctxt, String... names)
+	{
+		for (String name : names)
+		{
+			ctxt.generateJavaSource(", ");
+
+			if (ctxt.isAttributeSpecified(name))
+			{
+				ctxt.generateAttribute(name);
+			}
+			else
+			{
+				ctxt.generateJavaSource("null");
+			}
+		}
+	}
+
+	/**
+	 * Generates the arguments for the dynamic attributes as alternating names
+	 * and values, preceded by a comma. A literal value is rendered into an
+	 * {@link com.jiglu.mstaglib.AttributeFragment} constant of the page so it
+	 * is only escaped once.
+	 * @param ctxt the plugin context.
+	 * @param names the dynamic attribute names.
+	 */
+	static void generateAttributes(TagPluginContext ctxt, List<String> names)
+	{
+		// Pass null rather than let an empty array be allocated on every call
+		if (names.isEmpty())
+		{
+			ctxt.generateJavaSource(", (Object[])null");
+
+			return;
+		}
+
+		for (String name : names)
+		{
+			ctxt.generateJavaSource(", " + quote(name) + ", ");
+
+			if (ctxt.isConstantAttribute(name))
+			{
+				String variable = ctxt.getTemporaryVariableName();
+
+				ctxt.generateDeclaration(variable, "private static final com.jiglu.mstaglib.AttributeFragment " +
+					variable + " = com.jiglu.mstaglib.AttributeFragment.of(" + quote(name) + ", " +
+					quote(ctxt.getConstantAttribute(name)) + ");\n");
+				ctxt.generateJavaSource(variable);
+			}
+			else
+			{
+				ctxt.generateAttribute(name);
+			}
+		}
+	}
+
+	/**
+	 * Generates the argument for the class attribute, which is a dynamic
+	 * attribute but is passed separately so the error class can replace it. It
+	 * is removed from the dynamic attribute names, unless it is a literal that
+	 * can't be replaced because there is no error class, in which case it is
+	 * moved to the front of them so it is rendered as a fragment in the same
+	 * place.
+	 * @param ctxt the plugin context.
+	 * @param names the dynamic attribute names.
+	 */
+	static void generateClass(TagPluginContext ctxt, List<String> names)
+	{
+		if (names.contains("class") && ctxt.isConstantAttribute("class") && !ctxt.isAttributeSpecified("errorClass"))
+		{
+			names.remove("class");
+			names.add(0, "class");
+			ctxt.generateJavaSource(", null");
+		}
+		else if (names.remove("class"))
+		{
+			ctxt.generateJavaSource(", (String)");
+			ctxt.generateAttribute("class");
+		}
+		else
+		{
+			ctxt.generateJavaSource(", null");
+		}
+	}
+
+	/**
+	 * Generates the start of a call to a method of the renderer, with the page
+	 * context as its first argument.
+	 * @param ctxt the plugin context.
+	 * @param method the method name.
+	 */
+	static void generateCall(TagPluginContext ctxt, String method)
+	{
+		ctxt.generateJavaSource("com.jiglu.mstaglib.TagRenderer." + method + "(" + getPageContext(ctxt));
+	}
+
+	/**
+	 * Gets the names of the dynamic attributes specified for the tag. The
+	 * plugin API has no way to list them, so they are read from the tag node
+	 * the context was created for.
+	 * @param ctxt the plugin context.
+	 * @return the names or null if they couldn't be determined.
+	 */
+	static List<String> getDynamicAttributes(TagPluginContext ctxt)
+	{
+		try
+		{
+			Field field = ctxt.getClass().getDeclaredField("node");
+			field.setAccessible(true);
+
+			Object node = field.get(ctxt);
+			Method getJspAttributes = node.getClass().getMethod("getJspAttributes");
+			getJspAttributes.setAccessible(true);
+
+			Object[] attributes = (Object[])getJspAttributes.invoke(node);
+			List<String> names = new ArrayList<>();
+
+			if (attributes != null)
+			{
+				for (Object attribute : attributes)
+				{
+					Class<?> type = attribute.getClass();
+
+					if ((Boolean)invoke(type, "isDynamic", attribute))
+					{
+						String name = (String)invoke(type, "getName", attribute);
+
+						// Leave attributes in another namespace to the tag handler
+						if (!name.equals(invoke(type, "getLocalName", attribute)))
+						{
+							return null;
+						}
+
+						names.add(name);
+					}
+				}
+			}
+
+			return names;
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the expression for the page context in the generated code.
+	 * @param ctxt the plugin context.
+	 * @return the expression.
+	 */
+	static String getPageContext(TagPluginContext ctxt)
+	{
+		return ctxt.isTagFile() ? "((javax.servlet.jsp.PageContext)this.getJspContext())" : "_jspx_page_context";
+	}
+
+	/**
+	 * Quotes a value as a Java string literal.
+	 * @param value the value.
+	 * @return the literal or null if the value is null.
+	 */
+	static String quote(String value)
+	{
+		if (value == null)
+		{
+			return "null";
+		}
+
+		StringBuilder literal = new StringBuilder(value.length() + 2);
+		literal.append('"');
+
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+
+			switch (c)
+			{
+				case '"':
+					literal.append("\\\"");
+					break;
+
+				case '\\':
+					literal.append("\\\\");
+					break;
+
+				case '\n':
+					literal.append("\\n");
+					break;
+
+				case '\r':
+					literal.append("\\r");
+					break;
+
+				default:
+					if ((c < ' ') || (c > '~'))
+					{
+						literal.append(String.format("\\u%04x", (int)c));
+					}
+					else
+					{
+						literal.append(c);
+					}
+			}
+		}
+
+		return literal.append('"').toString();
+	}
+
+	/**
+	 * Invokes a method without arguments on a Jasper node object.
+	 * @param type the object class.
+	 * @param name the method name.
+	 * @param target the object.
+	 * @return the result.
+	 * @throws ReflectiveOperationException if the method couldn't be invoked.
+	 */
+	private static Object invoke(Class<?> type, String name, Object target) throws ReflectiveOperationException
+	{
+		Method method = type.getMethod(name);
+		method.setAccessible(true);
+
+		return method.invoke(target);
+	}
+}
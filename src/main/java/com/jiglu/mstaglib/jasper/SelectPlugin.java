@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.jasper;
+
+import java.util.List;
+
+import org.apache.jasper.compiler.tagplugin.TagPlugin;
+import org.apache.jasper.compiler.tagplugin.TagPluginContext;
+
+/**
+ * Replaces the handler for the select tag with calls to render its start and end
+ * directly around the body. The selection is cleared in a finally block so a
+ * body that fails doesn't leave it for options later in the request, without
+ * writing the end of the tag after a failure or a forward.
+ */
+public final class SelectPlugin implements TagPlugin
+{
+	@Override
+	public void doTag(TagPluginContext ctxt)
+	{
+		// Fall back to the tag handler if the attributes can't be determined
+		List<String> attributes = PluginSupport.getDynamicAttributes(ctxt);
+
+		if (attributes == null)
+		{
+			ctxt.dontUseTagPlugin();
+
+			return;
+		}
+
+		ctxt.generateJavaSource("try {");
+		PluginSupport.generateCall(ctxt, "startSelect");
+		PluginSupport.generateArguments(ctxt, "name", "disabled", "required");
+		PluginSupport.generateClass(ctxt, attributes);
+		PluginSupport.generateArguments(ctxt, "errorClass");
+		PluginSupport.generateAttributes(ctxt, attributes);
+		ctxt.generateJavaSource(");");
+
+		ctxt.generateBody();
+
+		PluginSupport.generateCall(ctxt, "endSelect");
+		ctxt.generateJavaSource(");");
+		ctxt.generateJavaSource("} finally {");
+		PluginSupport.generateCall(ctxt, "clearSelection");
+		ctxt.generateJavaSource(");");
+		ctxt.generateJavaSource("}");
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.jasper;
+
+import java.util.List;
+
+import org.apache.jasper.compiler.tagplugin.TagPlugin;
+import org.apache.jasper.compiler.tagplugin.TagPluginContext;
+
+/**
+ * Replaces the handler for the textarea tag with a call to render it directly.
+ */
+public final class TextareaPlugin implements TagPlugin
+{
+	@Override
+	public void doTag(TagPluginContext ctxt)
+	{
+		// Fall back to the tag handler if the attributes can't be determined
+		List<String> attributes = PluginSupport.getDynamicAttributes(ctxt);
+
+		if (attributes == null)
+		{
+			ctxt.dontUseTagPlugin();
+
+			return;
+		}
+
+		boolean format = ctxt.isAttributeSpecified("format");
+
+		PluginSupport.generateCall(ctxt, format ? "formattedTextarea" : "textarea");
+		PluginSupport.generateArguments(ctxt, "name", "value");
+
+		if (format)
+		{
+			PluginSupport.generateArguments(ctxt, "format");
+		}
+
+		PluginSupport.generateArguments(ctxt, "disabled", "required");
+		PluginSupport.generateClass(ctxt, attributes);
+		PluginSupport.generateArguments(ctxt, "errorClass");
+		PluginSupport.generateAttributes(ctxt, attributes);
+		ctxt.generateJavaSource(");");
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.servlet.jsp.JspException;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Checks the values of date and time inputs rendered without a format, which
+ * follow HTML for the values that can be and are otherwise written as they
+ * are.
+ */
+public final class DateInputTest
+{
+	/**
+	 * Renders an input of a type for a property and checks its value.
+	 * @param type the input type.
+	 * @param name the property.
+	 * @param expected the expected value.
+	 * @throws JspException if an error occurred.
+	 */
+	@ParameterizedTest
+	@CsvSource({
+		"date, day, 2022-03-04",
+		"month, day, 2022-03",
+		"time, day, 2022-03-04",
+		"datetime-local, day, 2022-03-04",
+		"date, moment, 2022-03-04",
+		"DATE, moment, 2022-03-04",
+		"time, moment, 05:06:07",
+		"datetime-local, moment, 2022-03-04T05:06:07",
+		"date, instant, 2022-03-04T05:06:07Z",
+		"date, number, 42",
+		"date, text, not a date"})
+	public void valueIsFormattedWhenItHasTheFields(String type, String name, String expected) throws JspException
+	{
+		StubPageContext pageContext = new StubPageContext(ValueStackFixture.create(new DateAction()));
+
+		TagRenderer.input(pageContext, type, name, null, null, null, null, null, null);
+
+		assertEquals("<input type=\"" + type + "\" name=\"" + name + "\" value=\"" + expected + "\" />",
+			pageContext.getOutput().getString());
+	}
+
+	/**
+	 * An action with dates, times and other values.
+	 */
+	public static final class DateAction extends ActionSupport
+	{
+		/** Serial version UID */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Gets a date.
+		 * @return the date.
+		 */
+		public LocalDate getDay()
+		{
+			return LocalDate.of(2022, 3, 4);
+		}
+
+		/**
+		 * Gets an instant.
+		 * @return the instant.
+		 */
+		public Instant getInstant()
+		{
+			return Instant.parse("2022-03-04T05:06:07Z");
+		}
+
+		/**
+		 * Gets a date and time.
+		 * @return the date and time.
+		 */
+		public LocalDateTime getMoment()
+		{
+			return LocalDateTime.of(2022, 3, 4, 5, 6, 7);
+		}
+
+		/**
+		 * Gets a number.
+		 * @return the number.
+		 */
+		public Integer getNumber()
+		{
+			return 42;
+		}
+
+		/**
+		 * Gets some text.
+		 * @return the text.
+		 */
+		public String getText()
+		{
+			return "not a date";
+		}
+	}
+}
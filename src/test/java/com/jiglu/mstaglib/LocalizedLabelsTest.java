@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.servlet.jsp.JspException;
+
+import org.junit.jupiter.api.Test;
+
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ActionContext;
+import com.opensymphony.xwork2.ActionSupport;
+import com.opensymphony.xwork2.ognl.OgnlValueStack;
+
+/**
+ * Checks that labels looked up in the many locales a client can ask for are
+ * shared by the locale they resolve to or not kept at all.
+ */
+public final class LocalizedLabelsTest
+{
+	/** The bundle in the test resources, which only has a German translation. */
+	private static final String BUNDLE = "com.jiglu.mstaglib.optionLabels";
+
+	/** The number of different locales requested, more than are kept. */
+	private static final int LOCALES = 200;
+
+	/**
+	 * Looks a label up in a bundle in many variants of two languages and
+	 * checks each language shares one set of labels.
+	 * @throws JspException if an error occurred.
+	 */
+	@Test
+	public void bundleLabelsAreSharedByResolvedLocale() throws JspException
+	{
+		Set<String> germanIds = new HashSet<>();
+		Set<String> frenchIds = new HashSet<>();
+
+		for (int i = 0; i < LOCALES; i++)
+		{
+			LocalizedLabels german = getLabels(Locale.forLanguageTag("de-x-r" + i), BUNDLE);
+			LocalizedLabels french = getLabels(Locale.forLanguageTag("fr-x-r" + i), BUNDLE);
+
+			assertEquals("Einfach &amp; günstig", german.get("plan.BASIC"));
+			assertEquals("Basic &amp; cheap", french.get("plan.BASIC"));
+
+			germanIds.add(german.getId());
+			frenchIds.add(french.getId());
+		}
+
+		assertEquals(Set.of(BUNDLE + "\0de"), germanIds);
+		assertEquals(1, frenchIds.size());
+	}
+
+	/**
+	 * Looks a label up through the action in many locales and checks that
+	 * once the locales kept are used up the labels aren't shared.
+	 * @throws JspException if an error occurred.
+	 */
+	@Test
+	public void providerLabelsStopBeingSharedWhenLocalesRunOut() throws JspException
+	{
+		int shared = 0;
+
+		for (int i = 0; i < LOCALES; i++)
+		{
+			LocalizedLabels labels = getLabels(Locale.forLanguageTag("en-x-r" + i), null);
+
+			assertEquals("plan.BASIC", labels.get("plan.BASIC"));
+
+			if (labels.getId() != null)
+			{
+				shared++;
+			}
+		}
+
+		assertNotNull(getLabels(Locale.forLanguageTag("en-x-r0"), null).getId());
+		assertNull(getLabels(Locale.forLanguageTag("en-x-r" + (LOCALES - 1)), null).getId());
+		assertEquals(64, shared);
+	}
+
+	/**
+	 * Looks a label up through an action that returns null for it and checks
+	 * the key is used instead.
+	 * @throws JspException if an error occurred.
+	 */
+	@Test
+	public void missingProviderTextFallsBackToKey() throws JspException
+	{
+		OgnlValueStack valueStack = ValueStackFixture.create(new NullTextAction());
+		StubPageContext pageContext = new StubPageContext(valueStack);
+
+		LocalizedLabels labels = LocalizedLabels.get(pageContext, RenderContext.get(pageContext), null);
+
+		assertEquals("plan.&lt;BASIC&gt;", labels.get("plan.<BASIC>"));
+	}
+
+	/**
+	 * Gets the labels for a request in a locale.
+	 * @param locale the locale of the action.
+	 * @param bundle the name of the bundle or null to use the action.
+	 * @return the labels.
+	 * @throws JspException if an error occurred.
+	 */
+	private static LocalizedLabels getLabels(Locale locale, String bundle) throws JspException
+	{
+		OgnlValueStack valueStack = ValueStackFixture.create(new ActionSupport());
+		StubPageContext pageContext = new StubPageContext(valueStack);
+
+		ActionContext.of(valueStack.getContext()).withLocale(locale);
+
+		return LocalizedLabels.get(pageContext, RenderContext.get(pageContext), bundle);
+	}
+
+	/**
+	 * An action whose text provider has no text for any key.
+	 */
+	public static final class NullTextAction extends ActionSupport
+	{
+		/** Serial version UID */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getText(String key)
+		{
+			return null;
+		}
+	}
+}
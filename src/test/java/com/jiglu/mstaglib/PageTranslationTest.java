@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.apache.jasper.JspC;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Precompiles the sample pages in <code>pages</code> with Jasper's JspC, the
+ * way a build would, and checks that the valid page compiles and that each
+ * invalid one fails translation with the message from the
+ * {@link NameValidator} or {@link AttributeExtraInfo}.
+ */
+public final class PageTranslationTest
+{
+	/** The web application the pages are translated in. */
+	@TempDir
+	Path m_webapp;
+
+	/** The errors JspC logged, as it only reports a count when it fails. */
+	private final StringBuilder m_errors = new StringBuilder();
+
+	/**
+	 * Checks that a page using all of the tags translates and compiles.
+	 * @throws Exception if the page couldn't be precompiled.
+	 */
+	@Test
+	public void validPageCompiles() throws Exception
+	{
+		precompile("valid.jsp");
+
+		assertTrue(Files.exists(m_webapp.resolve("out/org/apache/jsp/valid_jsp.class")));
+	}
+
+	/**
+	 * Checks that a page using all of the tags compiles with the tag plugins,
+	 * and that the select tag's selection is cleared however its body ends.
+	 * @throws Exception if the page couldn't be precompiled.
+	 */
+	@Test
+	public void validPageCompilesWithTagPlugins() throws Exception
+	{
+		copy("/com/jiglu/mstaglib/jasper/tagPlugins.xml",
+			Files.createDirectories(m_webapp.resolve("WEB-INF")).resolve("tagPlugins.xml"));
+
+		precompile("valid.jsp");
+
+		String source = Files.readString(m_webapp.resolve("out/org/apache/jsp/valid_jsp.java"));
+
+		assertTrue(Files.exists(m_webapp.resolve("out/org/apache/jsp/valid_jsp.class")));
+		assertTrue(source.contains("com.jiglu.mstaglib.TagRenderer.startSelect("), source);
+		assertTrue(source.contains("com.jiglu.mstaglib.TagRenderer.clearSelection("), source);
+	}
+
+	/**
+	 * Checks that an invalid page fails translation with the expected message.
+	 * @param page the page.
+	 * @param message the message translation should fail with.
+	 */
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		"badInputType.jsp|Invalid type for an input: txt",
+		"badBoolean.jsp|Invalid value for disabled: yes",
+		"badName.jsp|Invalid name for a property: a.getClass()",
+		"keyWithoutValue.jsp|A value is required with a key"})
+	public void invalidPageFailsTranslation(String page, String message)
+	{
+		assertThrows(Exception.class, () -> precompile(page));
+		assertTrue(m_errors.toString().contains(message), () -> "Expected " + message + " in " + m_errors);
+	}
+
+	/**
+	 * Copies a sample page and the TLD into the web application and
+	 * precompiles the page, failing on any error.
+	 * @param page the name of the page.
+	 * @throws Exception if the page couldn't be precompiled.
+	 */
+	private void precompile(String page) throws Exception
+	{
+		// The TLD is found in WEB-INF, with the classes it names on the class path
+		copy("/META-INF/mstaglib.tld", Files.createDirectories(m_webapp.resolve("WEB-INF")).resolve("mstaglib.tld"));
+		copy("/pages/" + page, m_webapp.resolve(page));
+
+		JspC jspc = new JspC();
+
+		jspc.setUriroot(m_webapp.toString());
+		jspc.setOutputDir(m_webapp.resolve("out").toString());
+		jspc.setJspFiles(page);
+		jspc.setCompile(true);
+		jspc.setFailOnError(true);
+
+		Logger logger = Logger.getLogger(JspC.class.getName());
+		Handler handler = new ErrorHandler();
+
+		logger.addHandler(handler);
+
+		try
+		{
+			jspc.execute();
+		}
+		finally
+		{
+			logger.removeHandler(handler);
+		}
+	}
+
+	/**
+	 * Copies a resource to a file.
+	 * @param resource the resource name.
+	 * @param file the file.
+	 * @throws IOException if an error occurred copying.
+	 */
+	private static void copy(String resource, Path file) throws IOException
+	{
+		try (InputStream in = PageTranslationTest.class.getResourceAsStream(resource))
+		{
+			Files.copy(in, file);
+		}
+	}
+
+	/**
+	 * Collects the messages of the errors JspC logs, including those of the
+	 * exceptions they wrap.
+	 */
+	private final class ErrorHandler extends Handler
+	{
+		@Override
+		public void close()
+		{
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void publish(LogRecord record)
+		{
+			m_errors.append(record.getMessage()).append('\n');
+
+			for (Throwable cause = record.getThrown(); cause != null; cause = cause.getCause())
+			{
+				m_errors.append(cause.getMessage()).append('\n');
+			}
+		}
+	}
+}
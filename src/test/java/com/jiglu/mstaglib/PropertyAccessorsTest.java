@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that reading a path directly calls each getter once per read,
+ * including the read that compiles it.
+ */
+public final class PropertyAccessorsTest
+{
+	/**
+	 * Reads a path twice and checks each getter ran once for each read.
+	 */
+	@Test
+	public void gettersRunOnceWhenCompiling()
+	{
+		CountingBean bean = new CountingBean(new CountingBean(null));
+
+		assertEquals("value", PropertyAccessors.getValue(bean, "child.name"));
+		assertEquals(1, bean.m_childReads);
+		assertEquals(1, bean.m_child.m_nameReads);
+
+		assertEquals("value", PropertyAccessors.getValue(bean, "child.name"));
+		assertEquals(2, bean.m_childReads);
+		assertEquals(2, bean.m_child.m_nameReads);
+	}
+
+	/**
+	 * Reads a path through a null object and checks that it is left to OGNL
+	 * from then on without calling the getters again.
+	 */
+	@Test
+	public void nullIntermediateIsLeftToOgnl()
+	{
+		CountingBean bean = new CountingBean(null);
+
+		assertSame(PropertyAccessors.UNRESOLVED, PropertyAccessors.getValue(bean, "child.child.name"));
+		assertSame(PropertyAccessors.UNRESOLVED, PropertyAccessors.getValue(bean, "child.child.name"));
+		assertEquals(1, bean.m_childReads);
+	}
+
+	/**
+	 * Reads a path whose getter throws once and checks that it is compiled
+	 * when it is next read.
+	 */
+	@Test
+	public void failingGetterIsTriedAgain()
+	{
+		CountingBean bean = new CountingBean(null);
+
+		bean.m_fail = true;
+		assertSame(PropertyAccessors.UNRESOLVED, PropertyAccessors.getValue(bean, "name"));
+
+		bean.m_fail = false;
+		assertEquals("value", PropertyAccessors.getValue(bean, "name"));
+	}
+
+	/**
+	 * A bean that counts the calls to its getters.
+	 */
+	public static final class CountingBean
+	{
+		private final CountingBean m_child;
+
+		private boolean m_fail;
+
+		private int m_childReads;
+
+		private int m_nameReads;
+
+		/**
+		 * Creates a new bean.
+		 * @param child the child or null.
+		 */
+		CountingBean(CountingBean child)
+		{
+			m_child = child;
+		}
+
+		/**
+		 * Gets the child.
+		 * @return the child or null.
+		 */
+		public CountingBean getChild()
+		{
+			m_childReads++;
+
+			return m_child;
+		}
+
+		/**
+		 * Gets the name.
+		 * @return the name.
+		 */
+		public String getName()
+		{
+			if (m_fail)
+			{
+				throw new IllegalStateException("Not yet");
+			}
+
+			m_nameReads++;
+
+			return "value";
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+
+import org.junit.jupiter.api.Test;
+
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Checks that a select tag whose body fails doesn't leave its selection for
+ * options rendered later in the request.
+ */
+public final class SelectFailureTest
+{
+	/**
+	 * Starts a select tag, finishes it as Jasper does when the body throws and
+	 * checks that an option outside it fails as it should.
+	 * @throws JspException if an error occurred.
+	 */
+	@Test
+	public void failedBodyClearsSelection() throws JspException
+	{
+		StubPageContext pageContext = new StubPageContext(ValueStackFixture.create(new ActionSupport()));
+		Select select = new Select();
+
+		select.setPageContext(pageContext);
+		select.setName("locale");
+		select.doStartTag();
+
+		assertNotNull(RenderContext.get(pageContext).getSelection());
+
+		// Jasper calls doFinally without doEndTag when the body throws
+		select.doFinally();
+
+		assertNull(RenderContext.get(pageContext).getSelection());
+		assertThrows(JspTagException.class, () -> TagRenderer.option(pageContext, "GB", null, null));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the slowest calls of an interval are kept however many faster
+ * slow calls follow them.
+ */
+public final class SlowRendersTest
+{
+	/**
+	 * Records an outlier followed by a burst of calls just over the threshold
+	 * and checks the outlier is still reported first.
+	 */
+	@Test
+	public void burstDoesNotPushOutOutlier()
+	{
+		SlowRenders renders = new SlowRenders();
+
+		renders.record(null, "textarea", "document", 3_000_000_000L);
+
+		for (int i = 0; i < 1000; i++)
+		{
+			renders.record(null, "input", "name", 1_000_000L + (i * 1000L));
+		}
+
+		String[] slowest = renders.getSlowest();
+
+		assertEquals(10, slowest.length);
+		assertEquals("3000.000 ms - textarea document", slowest[0]);
+		assertEquals("1.999 ms - input name", slowest[1]);
+		assertEquals("1.991 ms - input name", slowest[9]);
+	}
+
+	/**
+	 * Checks that draining reports the interval and starts a new one.
+	 */
+	@Test
+	public void drainStartsNewInterval()
+	{
+		SlowRenders renders = new SlowRenders();
+
+		for (int i = 0; i < 20; i++)
+		{
+			renders.record(null, "input", "name", 5_000_000L + i);
+		}
+
+		assertEquals(10, renders.drain().length);
+		assertEquals(0, renders.getSlowest().length);
+
+		renders.record(null, "select", "country", 1_000_000L);
+
+		assertEquals("1.000 ms - select country", renders.drain()[0]);
+	}
+}
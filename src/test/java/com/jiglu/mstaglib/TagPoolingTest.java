@@ -0,0 +1,343 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.Tag;
+
+import org.junit.jupiter.api.Test;
+
+import com.jiglu.mstaglib.stub.StubBodyContent;
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Renders the same pooled tag handlers on many threads, the way Jasper hands
+ * a pooled handler to one thread at a time, and checks that every page is
+ * rendered exactly as it would be by new handlers with nothing leaking in
+ * from another thread's use.
+ */
+public final class TagPoolingTest
+{
+	/** The number of threads rendering pages. */
+	private static final int THREADS = 16;
+
+	/** The number of pages each thread renders. */
+	private static final int PAGES = 500;
+
+	/** The number of handlers kept in each pool, fewer than the threads so handlers move between them. */
+	private static final int POOL_SIZE = 4;
+
+	private final Pool<Input> m_inputs = new Pool<>(Input::new);
+
+	private final Pool<Textarea> m_textareas = new Pool<>(Textarea::new);
+
+	private final Pool<Select> m_selects = new Pool<>(Select::new);
+
+	private final Pool<Option> m_options = new Pool<>(Option::new);
+
+	/**
+	 * Renders pages on all the threads with pooled handlers and compares each
+	 * one with the same page rendered by new handlers.
+	 * @throws Exception if an error occurred.
+	 */
+	@Test
+	public void pooledHandlersKeepEachThreadsOutputSeparate() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<>();
+
+		try
+		{
+			for (int i = 0; i < THREADS; i++)
+			{
+				int thread = i;
+
+				results.add(executor.submit(new Callable<Integer>()
+				{
+					@Override
+					public Integer call() throws Exception
+					{
+						start.await();
+
+						return renderPages(thread);
+					}
+				}));
+			}
+
+			start.countDown();
+
+			for (Future<Integer> result : results)
+			{
+				assertEquals(PAGES, result.get(2, TimeUnit.MINUTES));
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Renders the pages for one thread, each with its own values, and checks
+	 * them.
+	 * @param thread the number of the thread.
+	 * @return the number of pages rendered.
+	 * @throws JspException if an error occurred.
+	 */
+	private int renderPages(int thread) throws JspException
+	{
+		PoolingAction action = new PoolingAction();
+		StubPageContext pageContext = new StubPageContext(ValueStackFixture.create(action));
+
+		for (int page = 0; page < PAGES; page++)
+		{
+			action.m_name = "Name <" + thread + "> & " + page;
+			action.m_description = "Description \"" + thread + "\" of " + page;
+			action.m_flag = (page % 2) == 0;
+			action.m_selection = "t" + ((page % 3 == 0) ? thread : "other");
+
+			pageContext.newRequest();
+			renderPage(pageContext, thread, page, true);
+
+			String pooled = pageContext.getOutput().getString();
+
+			pageContext.newRequest();
+			renderPage(pageContext, thread, page, false);
+
+			assertEquals(pageContext.getOutput().getString(), pooled, "Page " + page + " of thread " + thread);
+			assertTrue(pooled.contains(" data-thread=\"" + thread + "\""), pooled);
+			assertTrue(pooled.contains(">Description &quot;" + thread + "&quot; of " + page + "</textarea>"), pooled);
+
+			for (int other = 0; other < THREADS; other++)
+			{
+				if (other != thread)
+				{
+					assertFalse(pooled.contains("=\"t" + other + "\""), pooled);
+				}
+			}
+		}
+
+		return PAGES;
+	}
+
+	/**
+	 * Renders a page of form tags, setting only the attributes the tags have
+	 * on the page as Jasper does.
+	 * @param pageContext the page context.
+	 * @param thread the number of the thread.
+	 * @param page the number of the page.
+	 * @param pooled true to use pooled handlers, false to use new ones.
+	 * @throws JspException if an error occurred.
+	 */
+	private void renderPage(StubPageContext pageContext, int thread, int page, boolean pooled) throws JspException
+	{
+		// <ms:input type="text" name="name" class="..." data-thread="..." />
+		Input text = m_inputs.get(pooled);
+
+		setUp(text, pageContext, null);
+		text.setType("text");
+		text.setName("name");
+		text.setDynamicAttribute(null, "class", "field-" + thread);
+		text.setDynamicAttribute(null, "data-thread", Integer.toString(thread));
+		text.doStartTag();
+		text.doEndTag();
+		m_inputs.put(text, pooled);
+
+		// <ms:input type="checkbox" name="flag" />
+		Input checkbox = m_inputs.get(pooled);
+
+		setUp(checkbox, pageContext, null);
+		checkbox.setType("checkbox");
+		checkbox.setName("flag");
+		checkbox.doStartTag();
+		checkbox.doEndTag();
+		m_inputs.put(checkbox, pooled);
+
+		// <ms:textarea name="description" required="..." rows="..." />
+		Textarea textarea = m_textareas.get(pooled);
+
+		setUp(textarea, pageContext, null);
+		textarea.setName("description");
+		textarea.setRequired(Boolean.toString((page % 2) == 1));
+		textarea.setDynamicAttribute(null, "rows", Integer.toString(page % 10));
+		textarea.doStartTag();
+		textarea.doEndTag();
+		m_textareas.put(textarea, pooled);
+
+		// <ms:select name="selection"><ms:option value="...">...</ms:option>...</ms:select>
+		Select select = m_selects.get(pooled);
+
+		setUp(select, pageContext, null);
+		select.setName("selection");
+		select.doStartTag();
+
+		for (String value : new String[] {"t" + thread, "tother"})
+		{
+			Option option = m_options.get(pooled);
+			StubBodyContent body = new StubBodyContent(pageContext.getOut());
+
+			body.print("Option " + value + " on page " + page);
+
+			setUp(option, pageContext, select);
+			option.setValue(value);
+			option.doStartTag();
+			option.setBodyContent(body);
+			option.doInitBody();
+			option.doAfterBody();
+			option.doEndTag();
+			m_options.put(option, pooled);
+		}
+
+		select.doEndTag();
+		m_selects.put(select, pooled);
+	}
+
+	/**
+	 * Gives a handler its page context and parent before its attributes are
+	 * set.
+	 * @param handler the handler.
+	 * @param pageContext the page context.
+	 * @param parent the parent handler or null.
+	 */
+	private static void setUp(Tag handler, StubPageContext pageContext, Tag parent)
+	{
+		handler.setPageContext(pageContext);
+		handler.setParent(parent);
+	}
+
+	/**
+	 * A pool of handlers shared by all the threads. Like Jasper's pool, a
+	 * handler is created when the pool is empty and dropped when it's full.
+	 * @param <T> the type of handler.
+	 */
+	private static final class Pool<T>
+	{
+		private final BlockingQueue<T> m_handlers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+		private final Supplier<T> m_factory;
+
+		/**
+		 * Creates a new pool.
+		 * @param factory creates new handlers.
+		 */
+		Pool(Supplier<T> factory)
+		{
+			m_factory = factory;
+		}
+
+		/**
+		 * Gets a handler.
+		 * @param pooled true to take it from the pool if there is one, false
+		 * to always create a new one.
+		 * @return the handler.
+		 */
+		T get(boolean pooled)
+		{
+			T handler = pooled ? m_handlers.poll() : null;
+
+			return (handler != null) ? handler : m_factory.get();
+		}
+
+		/**
+		 * Returns a handler after use.
+		 * @param handler the handler.
+		 * @param pooled true to return it to the pool.
+		 */
+		void put(T handler, boolean pooled)
+		{
+			if (pooled)
+			{
+				m_handlers.offer(handler);
+			}
+		}
+	}
+
+	/**
+	 * The action for each thread's pages.
+	 */
+	public static final class PoolingAction extends ActionSupport
+	{
+		private String m_name;
+
+		private String m_description;
+
+		private boolean m_flag;
+
+		private String m_selection;
+
+		/** Serial version UID */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Gets the description.
+		 * @return the description.
+		 */
+		public String getDescription()
+		{
+			return m_description;
+		}
+
+		/**
+		 * Gets the name.
+		 * @return the name.
+		 */
+		public String getName()
+		{
+			return m_name;
+		}
+
+		/**
+		 * Gets the selection.
+		 * @return the selection.
+		 */
+		public String getSelection()
+		{
+			return m_selection;
+		}
+
+		/**
+		 * Gets the flag.
+		 * @return the flag.
+		 */
+		public boolean isFlag()
+		{
+			return m_flag;
+		}
+	}
+}
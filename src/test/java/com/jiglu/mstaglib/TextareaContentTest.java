@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.jiglu.mstaglib.stub.StubPageContext;
+import com.jiglu.mstaglib.stub.ValueStackFixture;
+import com.opensymphony.xwork2.ActionSupport;
+
+/**
+ * Checks the textarea content streamed from readers and files.
+ */
+public final class TextareaContentTest
+{
+	/** The directory holding the files read. */
+	@TempDir
+	Path m_directory;
+
+	/**
+	 * Renders a textarea bound to a reader twice in the same request, which
+	 * needs the property to be read again for the second.
+	 * @throws JspException if an error occurred.
+	 */
+	@Test
+	public void readerIsReadAgainForEachTag() throws JspException
+	{
+		StubPageContext pageContext = new StubPageContext(ValueStackFixture.create(new ContentAction(null)));
+
+		TagRenderer.textarea(pageContext, "letter", null, null, null, null, null);
+		TagRenderer.textarea(pageContext, "letter", null, null, null, null, null);
+
+		assertEquals("<textarea name=\"letter\">Dear &lt;Sir&gt;</textarea>"
+			+ "<textarea name=\"letter\">Dear &lt;Sir&gt;</textarea>", pageContext.getOutput().getString());
+	}
+
+	/**
+	 * Renders a textarea bound to a file and then to a missing file, which
+	 * must fail before anything is written.
+	 * @throws Exception if an error occurred.
+	 */
+	@Test
+	public void missingFileWritesNothing() throws Exception
+	{
+		Path file = Files.write(m_directory.resolve("notes.txt"), "Tom & Jerry".getBytes(StandardCharsets.UTF_8));
+		StubPageContext pageContext = new StubPageContext(ValueStackFixture.create(new ContentAction(file)));
+
+		TagRenderer.textarea(pageContext, "file", null, null, null, null, null);
+
+		assertEquals("<textarea name=\"file\">Tom &amp; Jerry</textarea>", pageContext.getOutput().getString());
+
+		Files.delete(file);
+		pageContext.newRequest();
+
+		assertThrows(JspTagException.class, () -> TagRenderer.textarea(pageContext, "file", null, null, null, null,
+			null));
+		assertEquals("", pageContext.getOutput().getString());
+	}
+
+	/**
+	 * An action with content to stream.
+	 */
+	public static final class ContentAction extends ActionSupport
+	{
+		private final Path m_file;
+
+		/** Serial version UID */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates a new action.
+		 * @param file the file to read or null.
+		 */
+		ContentAction(Path file)
+		{
+			m_file = file;
+		}
+
+		/**
+		 * Gets the file.
+		 * @return the file.
+		 */
+		public Path getFile()
+		{
+			return m_file;
+		}
+
+		/**
+		 * Gets a new reader for the letter.
+		 * @return the reader.
+		 */
+		public Reader getLetter()
+		{
+			return new StringReader("Dear <Sir>");
+		}
+	}
+}
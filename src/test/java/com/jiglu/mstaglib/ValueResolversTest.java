@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.JspTagException;
+import javax.servlet.jsp.PageContext;
+
+import org.junit.jupiter.api.Test;
+
+import com.jiglu.mstaglib.stub.StubPageContext;
+
+/**
+ * Checks that a page without a Struts value stack fails unless the EL
+ * resolver has been listed for it.
+ */
+public final class ValueResolversTest
+{
+	/**
+	 * Renders an input on a page without a value stack and checks it fails.
+	 */
+	@Test
+	public void missingValueStackFails()
+	{
+		StubPageContext pageContext = new StubPageContext(null);
+
+		pageContext.setAttribute("name", "value", PageContext.REQUEST_SCOPE);
+
+		assertThrows(JspTagException.class, () -> TagRenderer.input(pageContext, "text", "name", null, null, null,
+			null, null, null));
+	}
+
+	/**
+	 * Renders an input on a page without a value stack with the EL resolver
+	 * listed and checks it reads the request attribute.
+	 * @throws JspException if an error occurred.
+	 */
+	@Test
+	public void listedELResolverReadsAttributes() throws JspException
+	{
+		StubPageContext pageContext = new StubPageContext(null);
+
+		pageContext.setInitParameter(ValueResolvers.PARAMETER, ELValueResolver.class.getName());
+		pageContext.setAttribute("name", "value", PageContext.REQUEST_SCOPE);
+
+		TagRenderer.input(pageContext, "text", "name", null, null, null, null, null, null);
+
+		assertEquals("<input type=\"text\" name=\"name\" value=\"value\" />", pageContext.getOutput().getString());
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib.stub;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.tagext.BodyContent;
+
+/**
+ * A JSP writer that collects its output in a reusable buffer. It serves both
+ * as the page output and as the body content of tags such as options.
+ */
+public final class StubBodyContent extends BodyContent
+{
+	private final StringBuilder m_buffer = new StringBuilder(4096);
+
+	/**
+	 * Creates a new writer.
+	 * @param enclosingWriter the enclosing writer or null for the page output.
+	 */
+	public StubBodyContent(JspWriter enclosingWriter)
+	{
+		super(enclosingWriter);
+	}
+
+	/**
+	 * Gets the number of characters written since the buffer was last cleared.
+	 * @return the number of characters.
+	 */
+	public int length()
+	{
+		return m_buffer.length();
+	}
+
+	@Override
+	public void clear()
+	{
+		m_buffer.setLength(0);
+	}
+
+	@Override
+	public void clearBuffer()
+	{
+		m_buffer.setLength(0);
+	}
+
+	@Override
+	public void close()
+	{
+	}
+
+	@Override
+	public void flush()
+	{
+	}
+
+	@Override
+	public int getBufferSize()
+	{
+		return m_buffer.capacity();
+	}
+
+	@Override
+	public Reader getReader()
+	{
+		return new StringReader(m_buffer.toString());
+	}
+
+	@Override
+	public int getRemaining()
+	{
+		// Like Jasper's body content the buffer grows, so the position is the buffer size less the remaining space
+		return m_buffer.capacity() - m_buffer.length();
+	}
+
+	@Override
+	public String getString()
+	{
+		return m_buffer.toString();
+	}
+
+	@Override
+	public void newLine()
+	{
+		m_buffer.append('\n');
+	}
+
+	@Override
+	public void print(boolean b)
+	{
+		m_buffer.append(b);
+	}
+
+	@Override
+	public void print(char c)
+	{
+		m_buffer.append(c);
+	}
+
+	@Override
+	public void print(char[] s)
+	{
+		m_buffer.append(s);
+	}
+
+	@Override
+	public void print(double d)
+	{
+		m_buffer.append(d);
+	}
+
+	@Override
+	public void print(float f)
+	{
+		m_buffer.append(f);
+	}
+
+	@Override
+	public void print(int i)
+	{
+		m_buffer.append(i);
+	}
+
+	@Override
+	public void print(long l)
+	{
+		m_buffer.append(l);
+	}
+
+	@Override
+	public void print(Object obj)
+	{
+		m_buffer.append(obj);
+	}
+
+	@Override
+	public void print(String s)
+	{
+		m_buffer.append(s);
+	}
+
+	@Override
+	public void println()
+	{
+		newLine();
+	}
+
+	@Override
+	public void println(boolean x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(char x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(char[] x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(double x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(float x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(int x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(long x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(Object x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void println(String x)
+	{
+		print(x);
+		newLine();
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len)
+	{
+		m_buffer.append(cbuf, off, len);
+	}
+
+	@Override
+	public void write(int c)
+	{
+		m_buffer.append((char)c);
+	}
+
+	@Override
+	public void write(String str, int off, int len)
+	{
+		m_buffer.append(str, off, off + len);
+	}
+
+	@Override
+	public void writeOut(Writer out) throws IOException
+	{
+		if (out instanceof StubBodyContent)
+		{
+			((StubBodyContent)out).m_buffer.append(m_buffer);
+		}
+		else
+		{
+			out.write(m_buffer.toString());
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return m_buffer.toString();
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.stub;
+
+import java.beans.FeatureDescriptor;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.el.ArrayELResolver;
+import javax.el.BeanELResolver;
+import javax.el.CompositeELResolver;
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.FunctionMapper;
+import javax.el.ListELResolver;
+import javax.el.MapELResolver;
+import javax.el.VariableMapper;
+import javax.servlet.jsp.PageContext;
+
+/**
+ * An EL context with the resolvers a JSP page has for scoped attributes and
+ * their properties, without an expression factory behind it.
+ */
+public final class StubELContext extends ELContext
+{
+	private final CompositeELResolver m_resolver = new CompositeELResolver();
+
+	/**
+	 * Creates a new EL context.
+	 * @param pageContext the page context scoped attributes are found in.
+	 */
+	public StubELContext(PageContext pageContext)
+	{
+		m_resolver.add(new ScopedAttributeResolver(pageContext));
+		m_resolver.add(new MapELResolver(true));
+		m_resolver.add(new ListELResolver(true));
+		m_resolver.add(new ArrayELResolver(true));
+		m_resolver.add(new BeanELResolver(true));
+	}
+
+	@Override
+	public ELResolver getELResolver()
+	{
+		return m_resolver;
+	}
+
+	@Override
+	public FunctionMapper getFunctionMapper()
+	{
+		return null;
+	}
+
+	@Override
+	public VariableMapper getVariableMapper()
+	{
+		return null;
+	}
+
+	/**
+	 * Resolves top level names as scoped attributes.
+	 */
+	private static final class ScopedAttributeResolver extends ELResolver
+	{
+		private final PageContext m_pageContext;
+
+		/**
+		 * Creates a new resolver.
+		 * @param pageContext the page context.
+		 */
+		ScopedAttributeResolver(PageContext pageContext)
+		{
+			m_pageContext = pageContext;
+		}
+
+		@Override
+		public Class<?> getCommonPropertyType(ELContext context, Object base)
+		{
+			return (base == null) ? String.class : null;
+		}
+
+		@Override
+		public Iterator<FeatureDescriptor> getFeatureDescriptors(ELContext context, Object base)
+		{
+			return Collections.emptyIterator();
+		}
+
+		@Override
+		public Class<?> getType(ELContext context, Object base, Object property)
+		{
+			return null;
+		}
+
+		@Override
+		public Object getValue(ELContext context, Object base, Object property)
+		{
+			if (base != null)
+			{
+				return null;
+			}
+
+			context.setPropertyResolved(true);
+
+			return m_pageContext.findAttribute(property.toString());
+		}
+
+		@Override
+		public boolean isReadOnly(ELContext context, Object base, Object property)
+		{
+			return true;
+		}
+
+		@Override
+		public void setValue(ELContext context, Object base, Object property, Object value)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+package com.jiglu.mstaglib.stub;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.el.ELContext;
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.jsp.JspWriter;
+import javax.servlet.jsp.PageContext;
+import javax.servlet.jsp.el.ExpressionEvaluator;
+import javax.servlet.jsp.el.VariableResolver;
+
+import com.opensymphony.xwork2.util.ValueStack;
+
+/**
+ * A page context with no servlet container behind it. Only the page and
+ * request scopes are supported, which is all the tags use. There's only a
+ * servlet context once a context parameter has been set, and it only supports
+ * context parameters and attributes.
+ */
+public final class StubPageContext extends PageContext
+{
+	private final Map<String, Object> m_pageAttributes = new HashMap<>();
+
+	private final Map<String, Object> m_requestAttributes = new HashMap<>();
+
+	private final ValueStack m_valueStack;
+
+	private final StubBodyContent m_out = new StubBodyContent(null);
+
+	private final StubELContext m_elContext = new StubELContext(this);
+
+	private final Map<String, String> m_initParameters = new HashMap<>();
+
+	private final Map<String, Object> m_contextAttributes = new HashMap<>();
+
+	private ServletContext m_servletContext;
+
+	/**
+	 * Creates a new page context.
+	 * @param valueStack the value stack to expose as a request attribute or
+	 * null for a page rendered without Struts.
+	 */
+	public StubPageContext(ValueStack valueStack)
+	{
+		m_valueStack = valueStack;
+
+		newRequest();
+	}
+
+	/**
+	 * Discards the output and any request state so that the next render
+	 * behaves like the first tag of a new request.
+	 */
+	public void newRequest()
+	{
+		m_out.clearBuffer();
+		m_pageAttributes.clear();
+		m_requestAttributes.clear();
+
+		if (m_valueStack != null)
+		{
+			m_requestAttributes.put("struts.valueStack", m_valueStack);
+		}
+	}
+
+	/**
+	 * Sets a context parameter of the web application the page is in.
+	 * @param name the name of the parameter.
+	 * @param value the value.
+	 */
+	public void setInitParameter(String name, String value)
+	{
+		m_initParameters.put(name, value);
+		m_contextAttributes.clear();
+
+		if (m_servletContext == null)
+		{
+			m_servletContext = (ServletContext)Proxy.newProxyInstance(ServletContext.class.getClassLoader(),
+				new Class<?>[] { ServletContext.class }, (proxy, method, args) -> invokeContext(method.getName(), args));
+		}
+	}
+
+	/**
+	 * Calls a method of the servlet context.
+	 * @param method the name of the method.
+	 * @param args the arguments or null if there aren't any.
+	 * @return the result.
+	 */
+	private Object invokeContext(String method, Object[] args)
+	{
+		switch (method)
+		{
+			case "getInitParameter":
+				return m_initParameters.get(args[0]);
+
+			case "getAttribute":
+				return m_contextAttributes.get(args[0]);
+
+			case "setAttribute":
+				m_contextAttributes.put((String)args[0], args[1]);
+				return null;
+
+			case "removeAttribute":
+				m_contextAttributes.remove(args[0]);
+				return null;
+
+			case "equals":
+				return m_servletContext == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(m_servletContext);
+
+			case "toString":
+				return "StubServletContext";
+
+			default:
+				throw new UnsupportedOperationException(method);
+		}
+	}
+
+	/**
+	 * Gets the output written so far.
+	 * @return the output.
+	 */
+	public StubBodyContent getOutput()
+	{
+		return m_out;
+	}
+
+	@Override
+	public Object findAttribute(String name)
+	{
+		Object value = m_pageAttributes.get(name);
+
+		return (value != null) ? value : m_requestAttributes.get(name);
+	}
+
+	@Override
+	public void forward(String relativeUrlPath)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object getAttribute(String name)
+	{
+		return m_pageAttributes.get(name);
+	}
+
+	@Override
+	public Object getAttribute(String name, int scope)
+	{
+		return getScope(scope).get(name);
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNamesInScope(int scope)
+	{
+		return Collections.enumeration(getScope(scope).keySet());
+	}
+
+	@Override
+	public int getAttributesScope(String name)
+	{
+		if (m_pageAttributes.containsKey(name))
+		{
+			return PAGE_SCOPE;
+		}
+
+		return m_requestAttributes.containsKey(name) ? REQUEST_SCOPE : 0;
+	}
+
+	@Override
+	public ELContext getELContext()
+	{
+		return m_elContext;
+	}
+
+	@Override
+	public Exception getException()
+	{
+		return null;
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public ExpressionEvaluator getExpressionEvaluator()
+	{
+		return null;
+	}
+
+	@Override
+	public JspWriter getOut()
+	{
+		return m_out;
+	}
+
+	@Override
+	public Object getPage()
+	{
+		return null;
+	}
+
+	@Override
+	public ServletRequest getRequest()
+	{
+		return null;
+	}
+
+	@Override
+	public ServletResponse getResponse()
+	{
+		return null;
+	}
+
+	@Override
+	public ServletConfig getServletConfig()
+	{
+		return null;
+	}
+
+	@Override
+	public ServletContext getServletContext()
+	{
+		return m_servletContext;
+	}
+
+	@Override
+	public HttpSession getSession()
+	{
+		return null;
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public VariableResolver getVariableResolver()
+	{
+		return null;
+	}
+
+	@Override
+	public void handlePageException(Exception e)
+	{
+		throw new UnsupportedOperationException(e);
+	}
+
+	@Override
+	public void handlePageException(Throwable t)
+	{
+		throw new UnsupportedOperationException(t);
+	}
+
+	@Override
+	public void include(String relativeUrlPath)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void include(String relativeUrlPath, boolean flush)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void initialize(Servlet servlet, ServletRequest request, ServletResponse response, String errorPageURL,
+		boolean needsSession, int bufferSize, boolean autoFlush)
+	{
+	}
+
+	@Override
+	public void release()
+	{
+	}
+
+	@Override
+	public void removeAttribute(String name)
+	{
+		m_pageAttributes.remove(name);
+		m_requestAttributes.remove(name);
+	}
+
+	@Override
+	public void removeAttribute(String name, int scope)
+	{
+		getScope(scope).remove(name);
+	}
+
+	@Override
+	public void setAttribute(String name, Object value)
+	{
+		setAttribute(name, value, PAGE_SCOPE);
+	}
+
+	@Override
+	public void setAttribute(String name, Object value, int scope)
+	{
+		if (value == null)
+		{
+			getScope(scope).remove(name);
+		}
+		else
+		{
+			getScope(scope).put(name, value);
+		}
+	}
+
+	/**
+	 * Gets the attributes for a scope.
+	 * @param scope the scope.
+	 * @return the attributes.
+	 */
+	private Map<String, Object> getScope(int scope)
+	{
+		switch (scope)
+		{
+			case PAGE_SCOPE:
+				return m_pageAttributes;
+
+			case REQUEST_SCOPE:
+				return m_requestAttributes;
+
+			default:
+				throw new UnsupportedOperationException("Unsupported scope: " + scope);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 Dynamic Discovery Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * $Id$
+ */
+
+
+package com.jiglu.mstaglib.stub;
+
+import com.opensymphony.xwork2.config.ConfigurationManager;
+import com.opensymphony.xwork2.config.providers.StrutsDefaultConfigurationProvider;
+import com.opensymphony.xwork2.inject.Container;
+import com.opensymphony.xwork2.ognl.OgnlValueStack;
+import com.opensymphony.xwork2.util.ValueStackFactory;
+
+/**
+ * Creates OGNL value stacks from a Struts container configured with the
+ * framework defaults, without needing a servlet container.
+ */
+public final class ValueStackFixture
+{
+	private static final Container CONTAINER;
+
+	static
+	{
+		ConfigurationManager configurationManager = new ConfigurationManager(Container.DEFAULT_NAME);
+
+		configurationManager.addContainerProvider(new StrutsDefaultConfigurationProvider());
+
+		CONTAINER = configurationManager.getConfiguration().getContainer();
+	}
+
+	/** Private default constructor to prevent external instantiation. */
+	private ValueStackFixture()
+	{
+	}
+
+	/**
+	 * Creates a value stack with an action pushed on to it.
+	 * @param action the action.
+	 * @return the value stack.
+	 */
+	public static OgnlValueStack create(Object action)
+	{
+		OgnlValueStack valueStack = (OgnlValueStack)CONTAINER.getInstance(ValueStackFactory.class).createValueStack();
+
+		valueStack.getActionContext().withContainer(CONTAINER).withValueStack(valueStack).bind();
+		valueStack.push(action);
+
+		return valueStack;
+	}
+}
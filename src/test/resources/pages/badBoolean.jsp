@@ -0,0 +1,2 @@
+<%@ taglib uri="http://www.jiglu.com/taglibs/mstaglib" prefix="ms" %>
+<ms:input type="checkbox" name="flag" disabled="yes" />
@@ -0,0 +1,4 @@
+<%@ taglib uri="http://www.jiglu.com/taglibs/mstaglib" prefix="ms" %>
+<ms:select name="country">
+	<ms:option key="country.GB" />
+</ms:select>
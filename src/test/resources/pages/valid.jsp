@@ -0,0 +1,22 @@
+<%@ taglib uri="http://www.jiglu.com/taglibs/mstaglib" prefix="ms" %>
+<form>
+	<ms:input type="text" name="name" required="required" class="field" errorClass="field error" />
+	<ms:input type="checkbox" name="flag" checked="${flag}" disabled="false" />
+	<ms:input type="date" name="birthday" format="uuuu-MM-dd" />
+	<ms:textarea name="description" rows="4" />
+	<ms:select name="country" disabled="disabled">
+		<ms:option value="GB">United Kingdom</ms:option>
+		<ms:option value="FR" label="France" />
+		<ms:option value="DE" key="country.DE" />
+		<ms:simpleOption value="IT" label="Italy" />
+		<ms:options items="${countries}" itemValue="code" itemLabel="name" cacheKey="countries" />
+	</ms:select>
+	<ms:checkboxes name="permissions" items="${permissions}" itemValue="code" itemLabel="description" />
+	<ms:radios name="plan" items="com.example.Plan" labels="false" />
+	<ms:nested path="rows[0]">
+		<ms:input type="text" name="qty" />
+	</ms:nested>
+	<ms:input type="text" name="map['key']" />
+	<ms:input type="text" name="${dynamicName}" />
+	<ms:input type="Email" name="email" />
+</form>